@@ -0,0 +1,90 @@
+package fnug.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fnug.resource.CssCompressor;
+import fnug.resource.JsCompressor;
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Compressing the concatenated js and css of a {@link GeneratedBundle}, and gzip encoding of the js.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressorBenchmark {
+
+    @Param({ "100", "1000" })
+    public int files;
+
+    private byte[] js;
+    private byte[] css;
+    private JsCompressor jsCompressor;
+    private CssCompressor cssCompressor;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder jsBld = new StringBuilder();
+        StringBuilder cssBld = new StringBuilder();
+        for (int i = 0; i < files; i++) {
+            jsBld.append(GeneratedBundle.js(i));
+            if (i % 10 == 0) {
+                cssBld.append(GeneratedBundle.css(i));
+            }
+        }
+        js = jsBld.toString().getBytes("utf-8");
+        css = cssBld.toString().getBytes("utf-8");
+        jsCompressor = new JsCompressor();
+        cssCompressor = new CssCompressor();
+    }
+
+    @Benchmark
+    public byte[] compressJs() {
+        return jsCompressor.compress(js);
+    }
+
+    @Benchmark
+    public byte[] compressCss() {
+        return cssCompressor.compress(css);
+    }
+
+    @Benchmark
+    public byte[] gzip() {
+        return IOUtils.gzip(js);
+    }
+
+}
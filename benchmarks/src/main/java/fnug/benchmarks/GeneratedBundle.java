@@ -0,0 +1,155 @@
+package fnug.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Writes a bundle of generated javascript and css files with <code>@requires</code> tags to a temporary directory,
+ * together with a config file. The directory is put on the classpath through the context class loader, which is where
+ * {@link fnug.resource.DefaultResource} looks for resources.
+ * <p>
+ * Every js file requires the previous one and a couple of others further back, every tenth file also requires a css
+ * file. The config names the last file only, so the whole bundle is found by following the tags.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class GeneratedBundle {
+
+    /**
+     * Name of the generated bundle.
+     */
+    public static final String BUNDLE = "big";
+
+    /**
+     * Config path, as given to the servlet.
+     */
+    public static final String CONFIG = "/fnugbench.js";
+
+    private File dir;
+    private int files;
+    private ClassLoader previous;
+
+    /**
+     * Generates the files.
+     * 
+     * @param files
+     *            number of javascript files.
+     * @throws IOException
+     *             if writing fails.
+     */
+    public GeneratedBundle(int files) throws IOException {
+        this.files = files;
+        dir = File.createTempFile("fnugbench", ".dir");
+        dir.delete();
+        File bundleDir = new File(dir, BUNDLE);
+        if (!bundleDir.mkdirs()) {
+            throw new IOException("Failed to create dir: " + bundleDir);
+        }
+        for (int i = 0; i < files; i++) {
+            write(new File(bundleDir, "f" + i + ".js"), js(i));
+            if (i % 10 == 0) {
+                write(new File(bundleDir, "s" + i + ".css"), css(i));
+            }
+        }
+        write(new File(dir, CONFIG.substring(1)), "{\n    " + BUNDLE + ": {\n        checkModified: 0,\n" +
+                "        files: [ '" + jsPath(files - 1) + "' ]\n    }\n}\n");
+    }
+
+    /**
+     * Path of the given generated js file, relative to the bundle base path.
+     * 
+     * @param i
+     *            file number.
+     * @return the path.
+     */
+    public String jsPath(int i) {
+        return BUNDLE + "/f" + i + ".js";
+    }
+
+    /**
+     * Returns the number of js files.
+     * 
+     * @return number of js files.
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Puts the generated directory first on the calling thread's context class loader.
+     */
+    public void bind() {
+        try {
+            previous = Thread.currentThread().getContextClassLoader();
+            Thread.currentThread().setContextClassLoader(
+                    new URLClassLoader(new URL[] { dir.toURI().toURL() }, previous));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Restores the context class loader and removes the generated files.
+     */
+    public void dispose() {
+        Thread.currentThread().setContextClassLoader(previous);
+        IOUtils.rm(dir);
+    }
+
+    static String js(int i) {
+        StringBuilder bld = new StringBuilder();
+        bld.append("/**\n * Generated file ").append(i).append(".\n");
+        if (i > 0) {
+            bld.append(" * @requires ").append(BUNDLE).append("/f").append(i - 1).append(".js\n");
+        }
+        if (i > 2) {
+            bld.append(" * @requires ").append(BUNDLE).append("/f").append(i / 2).append(".js\n");
+            bld.append(" * @requires ").append(BUNDLE).append("/f").append(i / 3).append(".js\n");
+        }
+        if (i % 10 == 0) {
+            bld.append(" * @requires ").append(BUNDLE).append("/s").append(i).append(".css\n");
+        }
+        bld.append(" */\n");
+        bld.append("var gen").append(i).append(" = (function () {\n");
+        bld.append("    var count = 0, name = \"gen").append(i).append("\";\n");
+        bld.append("    function inc(by) {\n        count += by;\n        return count;\n    }\n");
+        bld.append("    return {\n        name: name,\n        inc: inc\n    };\n}());\n\n");
+        return bld.toString();
+    }
+
+    static String css(int i) {
+        return "/* generated " + i + " */\n.gen" + i + " {\n    margin: 0px 0px 0px 0px;\n    color: #ffffff;\n}\n\n";
+    }
+
+    private static void write(File f, String s) throws IOException {
+        FileOutputStream fos = new FileOutputStream(f);
+        try {
+            fos.write(s.getBytes("utf-8"));
+        } finally {
+            fos.close();
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package fnug.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fnug.resource.DefaultResource;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * {@link DefaultResource#findRequiresTags()} over every js file of a {@link GeneratedBundle}. The files are read once
+ * in setup, so this is the scanning for tags.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequiresTagsBenchmark {
+
+    @Param({ "100", "1000" })
+    public int files;
+
+    private GeneratedBundle bundle;
+    private DefaultResource[] resources;
+
+    @Setup
+    public void setup() throws Exception {
+        bundle = new GeneratedBundle(files);
+        bundle.bind();
+        resources = new DefaultResource[files];
+        for (int i = 0; i < files; i++) {
+            resources[i] = new DefaultResource("/", bundle.jsPath(i), 0);
+            resources[i].getBytes();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bundle.dispose();
+    }
+
+    @Benchmark
+    public int findRequiresTags() {
+        int count = 0;
+        for (DefaultResource r : resources) {
+            List<String> l = r.findRequiresTags();
+            count += l.size();
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,146 @@
+package fnug.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fnug.ResourceServlet;
+import fnug.resource.ResourceCollection;
+import fnug.resource.ResourceResolver;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Full request path through {@link ResourceServlet#service(javax.servlet.ServletRequest, javax.servlet.ServletResponse)}
+ * for the different kinds of paths the servlet serves, against a {@link GeneratedBundle}. Everything is built and
+ * compiled once during setup, so this measures serving, not compiling.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceServletBenchmark {
+
+    @Param({ "100", "1000" })
+    public int files;
+
+    private GeneratedBundle bundle;
+    private ResourceServlet servlet;
+    private Map<String, String> plain = new HashMap<String, String>();
+    private Map<String, String> gzip = new HashMap<String, String>();
+    private String compressedJs;
+
+    @Setup
+    public void setup() throws Exception {
+        bundle = new GeneratedBundle(files);
+        bundle.bind();
+
+        gzip.put("Accept-Encoding", "gzip,deflate");
+
+        ServletConfig config = ServletStubs.config(GeneratedBundle.CONFIG);
+        servlet = new ResourceServlet();
+        servlet.init(config);
+
+        // binds the resolver to this thread and builds the bundle.
+        serve("/" + GeneratedBundle.BUNDLE, plain);
+
+        ResourceResolver resolver = (ResourceResolver) config.getServletContext().getAttribute(
+                ResourceResolver.class.getName() + "_" + GeneratedBundle.CONFIG.hashCode());
+        ResourceCollection coll = resolver.getBundle(GeneratedBundle.BUNDLE).getResourceCollections()[0];
+        compressedJs = "/" + coll.getFullPath() + ".js";
+
+        // compile outside the measurement.
+        serve(compressedJs, plain);
+        serve(compressedJs, gzip);
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+        bundle.dispose();
+    }
+
+    private long serve(String path, Map<String, String> headers) throws Exception {
+        ServletStubs.Response resp = ServletStubs.response();
+        servlet.service(ServletStubs.request(path, headers), resp.getResponse());
+        if (resp.getStatus() != 200) {
+            throw new IllegalStateException("Status " + resp.getStatus() + " for " + path);
+        }
+        return resp.getWritten();
+    }
+
+    @Benchmark
+    public long bundleNames() throws Exception {
+        return serve("", plain);
+    }
+
+    @Benchmark
+    public long bundleJson() throws Exception {
+        return serve("/" + GeneratedBundle.BUNDLE, plain);
+    }
+
+    @Benchmark
+    public long bundleJsonGzip() throws Exception {
+        return serve("/" + GeneratedBundle.BUNDLE, gzip);
+    }
+
+    @Benchmark
+    public long bootstrap() throws Exception {
+        return serve("/" + GeneratedBundle.BUNDLE + ".js", plain);
+    }
+
+    @Benchmark
+    public long rawResource() throws Exception {
+        return serve("/" + bundle.jsPath(files / 2), plain);
+    }
+
+    @Benchmark
+    public long rawResourceGzip() throws Exception {
+        return serve("/" + bundle.jsPath(files / 2), gzip);
+    }
+
+    @Benchmark
+    public long compressedResource() throws Exception {
+        return serve(compressedJs, plain);
+    }
+
+    @Benchmark
+    public long compressedResourceGzip() throws Exception {
+        return serve(compressedJs, gzip);
+    }
+
+}
@@ -0,0 +1,202 @@
+package fnug.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Minimal servlet api stand-ins, just enough to drive {@link fnug.ResourceServlet} outside a container. Built as
+ * dynamic proxies where anything not answered returns null, false or -1.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class ServletStubs {
+
+    /**
+     * Makes a servlet config with the given config init parameter.
+     * 
+     * @param config
+     *            value of the 'config' init parameter.
+     * @return the servlet config.
+     */
+    public static ServletConfig config(String config) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        final ServletContext context = proxy(ServletContext.class, new Answer() {
+            @Override
+            public Object answer(String name, Object[] args) {
+                if (name.equals("getAttribute")) {
+                    return attributes.get(args[0]);
+                } else if (name.equals("setAttribute")) {
+                    attributes.put((String) args[0], args[1]);
+                }
+                return null;
+            }
+        });
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("config", config);
+        return proxy(ServletConfig.class, new Answer() {
+            @Override
+            public Object answer(String name, Object[] args) {
+                if (name.equals("getInitParameter")) {
+                    return params.get(args[0]);
+                } else if (name.equals("getServletContext")) {
+                    return context;
+                } else if (name.equals("getServletName")) {
+                    return "fnug";
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Makes a GET request for the given path info.
+     * 
+     * @param pathInfo
+     *            path after the servlet path, starting with a slash.
+     * @param headers
+     *            request headers.
+     * @return the request.
+     */
+    public static HttpServletRequest request(final String pathInfo, final Map<String, String> headers) {
+        return proxy(HttpServletRequest.class, new Answer() {
+            @Override
+            public Object answer(String name, Object[] args) {
+                if (name.equals("getMethod")) {
+                    return "GET";
+                } else if (name.equals("getContextPath")) {
+                    return "";
+                } else if (name.equals("getServletPath")) {
+                    return "/fnug";
+                } else if (name.equals("getPathInfo")) {
+                    return pathInfo;
+                } else if (name.equals("getRequestURI")) {
+                    return "/fnug" + pathInfo;
+                } else if (name.equals("getRequestURL")) {
+                    return new StringBuffer("http://localhost:8080/fnug" + pathInfo);
+                } else if (name.equals("getProtocol")) {
+                    return "HTTP/1.1";
+                } else if (name.equals("getHeader")) {
+                    return headers.get(args[0]);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Makes a response that throws away everything written, but counts the bytes.
+     * 
+     * @return the response.
+     */
+    public static Response response() {
+        final Response result = new Response();
+        result.response = proxy(HttpServletResponse.class, new Answer() {
+            @Override
+            public Object answer(String name, Object[] args) {
+                if (name.equals("getOutputStream")) {
+                    return result.out;
+                } else if (name.equals("getWriter")) {
+                    return new PrintWriter(new OutputStreamWriter(result.out));
+                } else if (name.equals("setStatus") || name.equals("sendError")) {
+                    result.status = (Integer) args[0];
+                } else if (name.equals("getContentType")) {
+                    return result.contentType;
+                } else if (name.equals("setContentType")) {
+                    result.contentType = (String) args[0];
+                }
+                return null;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * A response and what was written to it.
+     */
+    public static class Response {
+
+        private HttpServletResponse response;
+        private int status = HttpServletResponse.SC_OK;
+        private String contentType;
+        private long written;
+        private ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                written += len;
+            }
+        };
+
+        public HttpServletResponse getResponse() {
+            return response;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+    }
+
+    private interface Answer {
+        Object answer(String name, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> clazz, final Answer answer) {
+        return clazz.cast(Proxy.newProxyInstance(ServletStubs.class.getClassLoader(), new Class<?>[] { clazz },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = answer.answer(method.getName(), args);
+                        if (result == null && method.getReturnType().isPrimitive()) {
+                            Class<?> type = method.getReturnType();
+                            if (type == boolean.class) {
+                                return false;
+                            } else if (type == long.class) {
+                                return -1l;
+                            } else if (type == int.class) {
+                                return -1;
+                            }
+                        }
+                        return result;
+                    }
+                }));
+    }
+
+}
@@ -0,0 +1,155 @@
+package fnug.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fnug.config.DefaultBundleConfig;
+import fnug.resource.AbstractResource;
+import fnug.resource.Bundle;
+import fnug.resource.DefaultBundle;
+import fnug.resource.DefaultResource;
+import fnug.resource.HasBundle;
+import fnug.resource.Resource;
+import fnug.resource.ResourceResolver;
+import fnug.resource.Tarjan;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * {@link Tarjan} on synthetic in memory dependency graphs, so only the graph walk is measured, not reading or scanning
+ * files. The "bundle" shape is the same as {@link GeneratedBundle}, "deep" is a single chain where every file requires
+ * the previous one, and "wide" is one file requiring all others, each of which requires a few files from the start.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TarjanBenchmark {
+
+    @Param({ "100", "1000", "20000" })
+    public int files;
+
+    @Param({ "bundle", "deep", "wide" })
+    public String shape;
+
+    private List<Resource> roots;
+
+    @Setup
+    public void setup() {
+        Bundle bundle = new DefaultBundle(new DefaultBundleConfig(new DefaultResource("/", "fnugbench.js"),
+                GeneratedBundle.BUNDLE, "/", null, 0, null, null));
+        final HashMap<String, Resource> resources = new HashMap<String, Resource>();
+        for (int i = 0; i < files; i++) {
+            List<String> requires = new ArrayList<String>();
+            if (shape.equals("deep")) {
+                if (i > 0) {
+                    requires.add(path(i - 1));
+                }
+            } else if (shape.equals("wide")) {
+                if (i == files - 1) {
+                    for (int j = 0; j < i; j++) {
+                        requires.add(path(j));
+                    }
+                } else {
+                    for (int j = 0; j < Math.min(i, 3); j++) {
+                        requires.add(path(j));
+                    }
+                }
+            } else {
+                if (i > 0) {
+                    requires.add(path(i - 1));
+                }
+                if (i > 2) {
+                    requires.add(path(i / 2));
+                    requires.add(path(i / 3));
+                }
+            }
+            resources.put(path(i), new GraphResource(bundle, path(i), requires));
+        }
+        new ResourceResolver() {
+            @Override
+            public Resource resolve(String path) {
+                return resources.get(path);
+            }
+        }.setThreadLocal();
+        roots = new LinkedList<Resource>();
+        roots.add(resources.get(path(files - 1)));
+    }
+
+    private static String path(int i) {
+        return GeneratedBundle.BUNDLE + "/f" + i + ".js";
+    }
+
+    @Benchmark
+    public List<Resource> tarjan() {
+        return new Tarjan(roots, false).getResult();
+    }
+
+    private static class GraphResource extends AbstractResource implements HasBundle {
+
+        private Bundle bundle;
+        private List<String> requires;
+
+        GraphResource(Bundle bundle, String path, List<String> requires) {
+            super("/", path);
+            this.bundle = bundle;
+            this.requires = requires;
+        }
+
+        @Override
+        public Bundle getBundle() {
+            return bundle;
+        }
+
+        @Override
+        public List<String> findRequiresTags() {
+            return requires;
+        }
+
+        @Override
+        protected Entry readEntry() {
+            return new Entry(1l, new byte[0]);
+        }
+
+        @Override
+        protected long readLastModified() {
+            return 1l;
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+package fnug.servlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * {@link Bootstrap#escape(String, int)} of bundle json of increasing size, against the string concatenating
+ * implementation it replaced. In the servlet package since escape() isn't public.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BootstrapEscapeBenchmark {
+
+    private static final int LINE_LENGTH = 1000;
+
+    @Param({ "100", "1000", "20000" })
+    public int files;
+
+    private String json;
+
+    @Setup
+    public void setup() {
+        StringBuilder bld = new StringBuilder("{\"name\":\"big\",\"colls\":[{\"name\":\"big\",\"files\":[");
+        for (int i = 0; i < files; i++) {
+            if (i > 0) {
+                bld.append(',');
+            }
+            bld.append("{\"path\":\"big/some/path/file").append(i).append(".js\"");
+            if (i % 10 == 0) {
+                bld.append(",\"lint\":\"<p>Problem at line ").append(i)
+                        .append(": Expected \\\"===\\\" and saw \\\"==\\\".</p>\"");
+            }
+            bld.append('}');
+        }
+        json = bld.append("]}]}").toString();
+    }
+
+    @Benchmark
+    public String escape() {
+        return Bootstrap.escape(json, LINE_LENGTH);
+    }
+
+    @Benchmark
+    public String legacyEscape() {
+        return legacyEscape(json, LINE_LENGTH);
+    }
+
+    /**
+     * The string concatenating implementation escape() replaced, same as the reference in BootstrapTest.
+     */
+    static String legacyEscape(String s, int length) {
+
+        s = s.replace("\\", "\\\\");
+        s = s.replace("\"", "\\\"");
+
+        String result = "";
+        int start = 0;
+        int end = 0;
+
+        while (end + length < s.length()) {
+            start = end;
+            end = start + length;
+            while (s.charAt(end) == '\\' || end > 0 && s.charAt(end - 1) == '\\')
+                end--;
+            result += s.substring(start, end) + "\"+\n\"";
+        }
+
+        result += s.substring(end, s.length());
+
+        result = "\"" + result + "\"";
+
+        return result;
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package fnug.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * {@link CssMinifier#minify(String)} against {@link YUICssCompressor} on a stylesheet with the usual mix of comments,
+ * pseudo classes, media queries, colors and zero values. Setup checks that both give the same output.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CssMinifierBenchmark {
+
+    @Param({ "100", "1000" })
+    public int rules;
+
+    private String css;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder bld = new StringBuilder();
+        bld.append("@charset \"utf-8\";\n/*! Copyright notice, kept */\n");
+        for (int i = 0; i < rules; i++) {
+            if (i % 50 == 0) {
+                bld.append("\n/* ----- section ").append(i / 50).append(" ----- */\n");
+            }
+            if (i % 25 == 24) {
+                bld.append("@media screen and (max-width: 640px) {\n    .r").append(i).append(" .col {\n");
+                bld.append("        width: 100%;\n        padding: 0px 0px 0px 0px;\n    }\n}\n");
+                continue;
+            }
+            bld.append(".r").append(i).append(" a:hover,\n.r").append(i).append(" > li :first-child {\n");
+            bld.append("    color: #FFFFFF;\n    background: rgb(51, 102, 153) url(\"img/bg").append(i);
+            bld.append(".png\") no-repeat;\n    margin: 0px 0em 0 0;\n    border: none;\n");
+            bld.append("    background-position: 0 0;\n    opacity: 0.75;\n");
+            bld.append("    font-family: \"Helvetica Neue\", Arial, sans-serif; /* fallback fonts */\n}\n\n");
+            if (i % 10 == 0) {
+                bld.append(".r").append(i).append(".empty { }\n");
+            }
+        }
+        css = bld.toString();
+        if (!yui().equals(minify())) {
+            throw new IllegalStateException("Css minifier output differs from yui");
+        }
+    }
+
+    @Benchmark
+    public String minify() {
+        return CssMinifier.minify(css);
+    }
+
+    @Benchmark
+    public String yui() throws IOException {
+        StringWriter writer = new StringWriter();
+        new YUICssCompressor(new StringReader(css)).compress(writer, 0);
+        return writer.toString();
+    }
+
+}
@@ -1,16 +1,15 @@
 package fnug;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -20,13 +19,13 @@ import org.codehaus.jackson.map.ObjectMapper;
 
 import fnug.resource.Bundle;
 import fnug.resource.DefaultResource;
+import fnug.resource.HasByteBuffer;
 import fnug.resource.Resource;
 import fnug.resource.ResourceResolver;
 import fnug.servlet.BadArg;
-import fnug.servlet.Bootstrap;
-import fnug.servlet.BundleNames;
+import fnug.servlet.ContentWriter;
 import fnug.servlet.ToServe;
-import fnug.servlet.ToServeBundle;
+import fnug.servlet.ToServeCache;
 import fnug.servlet.ToServeResource;
 
 /*
@@ -66,6 +65,8 @@ public class ResourceServlet extends HttpServlet {
     private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
     private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
     private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
     private static final String HEADER_EXPIRES = "Expires";
     private static final String HEADER_DATE = "Date";
     private static final String HEADER_CACHE_CONTROL = "Cache-Control";
@@ -73,6 +74,11 @@ public class ResourceServlet extends HttpServlet {
     private static final String PARAMETER_HTTPS = "https";
     
     private static final String VALUE_GZIP = "gzip";
+    private static final String VALUE_ANY = "*";
+    private static final String PREFIX_WEAK = "W/";
+
+    private static final String METHOD_GET = "GET";
+    private static final String METHOD_HEAD = "HEAD";
 
     private static final long ONE_YEAR = 365l * 24l * 60l * 60l * 1000l;
 
@@ -82,8 +88,11 @@ public class ResourceServlet extends HttpServlet {
 
     private static ThreadLocal<RequestEntry> reqEntry = new ThreadLocal<RequestEntry>();
 
+    private static final String SUFFIX_REFS = "_refs";
+
     private ResourceResolver resolver;
-    private ObjectMapper mapper = new ObjectMapper();
+    private String contextKey;
+    private ToServeCache toServeCache = new ToServeCache(new ObjectMapper());
 
     @Override
     public void init(ServletConfig config) throws ServletException {
@@ -93,6 +102,28 @@ public class ResourceServlet extends HttpServlet {
 
     }
 
+    /**
+     * Shuts down the resolver when the last servlet sharing it is destroyed, see {@link #initResolver(ServletConfig)}.
+     */
+    @Override
+    public void destroy() {
+        if (resolver != null) {
+            ServletContext context = getServletContext();
+            synchronized (context) {
+                Integer refs = (Integer) context.getAttribute(contextKey + SUFFIX_REFS);
+                if (refs == null || refs <= 1) {
+                    context.removeAttribute(contextKey);
+                    context.removeAttribute(contextKey + SUFFIX_REFS);
+                    resolver.shutdown();
+                } else {
+                    context.setAttribute(contextKey + SUFFIX_REFS, refs - 1);
+                }
+            }
+            resolver = null;
+        }
+        super.destroy();
+    }
+
     private void initResolver(ServletConfig config) throws ServletException {
 
         String configStr = config.getInitParameter("config");
@@ -100,33 +131,44 @@ public class ResourceServlet extends HttpServlet {
             throw new ServletException("Missing config parameter 'config'");
         }
 
-        String contextKey = ResourceResolver.class.getName() + "_" + configStr.hashCode();
+        contextKey = ResourceResolver.class.getName() + "_" + configStr.hashCode();
 
-        resolver = (ResourceResolver) config.getServletContext().getAttribute(contextKey);
-        if (resolver == null) {
+        // servlets with the same config share the resolver, counting
+        // references so that it's shut down with the last one.
+        ServletContext context = config.getServletContext();
+        synchronized (context) {
+            resolver = (ResourceResolver) context.getAttribute(contextKey);
+            if (resolver == null) {
+                resolver = makeResolver(configStr);
+                context.setAttribute(contextKey, resolver);
+            }
+            Integer refs = (Integer) context.getAttribute(contextKey + SUFFIX_REFS);
+            context.setAttribute(contextKey + SUFFIX_REFS, refs == null ? 1 : refs + 1);
+        }
 
-            String[] configs = configStr.split("\\s*,\\s*");
+    }
 
-            LinkedList<Resource> resources = new LinkedList<Resource>();
+    private ResourceResolver makeResolver(String configStr) {
 
-            // add internal config resources first.
-            resources.add(new DefaultResource("/fnug/", "bundles.js"));
+        String[] configs = configStr.split("\\s*,\\s*");
 
-            for (String s : configs) {
-                // normalize windowz strings in config to only use forward slashes.
-                if (File.separatorChar == '\\') {
-                    s = s.replace(File.separatorChar, '/');
-                }
-                String basePath = s.substring(0, s.lastIndexOf(CHAR_SLASH) + 1);
-                String path = s.substring(s.lastIndexOf(CHAR_SLASH) + 1);
-                resources.add(new DefaultResource(basePath, path));
-            }
+        LinkedList<Resource> resources = new LinkedList<Resource>();
 
-            resolver = new ResourceResolver(resources);
-            config.getServletContext().setAttribute(contextKey, resolver);
+        // add internal config resources first.
+        resources.add(new DefaultResource("/fnug/", "bundles.js"));
 
+        for (String s : configs) {
+            // normalize windowz strings in config to only use forward slashes.
+            if (File.separatorChar == '\\') {
+                s = s.replace(File.separatorChar, '/');
+            }
+            String basePath = s.substring(0, s.lastIndexOf(CHAR_SLASH) + 1);
+            String path = s.substring(s.lastIndexOf(CHAR_SLASH) + 1);
+            resources.add(new DefaultResource(basePath, path));
         }
 
+        return new ResourceResolver(resources);
+
     }
 
     @Override
@@ -161,7 +203,10 @@ public class ResourceServlet extends HttpServlet {
         resolver.checkModified();
 
         String gzipHeader = req.getHeader(HEADER_ACCEPT_ENCODING);
-        boolean gzip = gzipHeader != null && gzipHeader.indexOf(VALUE_GZIP) >= 0;
+        String method = req.getMethod();
+
+        // HEAD never gets a compressed representation, see RequestEntry.serve()
+        boolean gzip = !method.equals(METHOD_HEAD) && gzipHeader != null && gzipHeader.indexOf(VALUE_GZIP) >= 0;
 
         String jsonp = req.getParameter(PARAM_CALLBACK);
         if (jsonp != null && jsonp.trim().equals("")) {
@@ -171,6 +216,16 @@ public class ResourceServlet extends HttpServlet {
         RequestEntry entry = new RequestEntry(prefix, path, gzip, jsonp);
         reqEntry.set(entry);
 
+        String ifNoneMatch = req.getHeader(HEADER_IF_NONE_MATCH);
+        if (ifNoneMatch != null && (method.equals(METHOD_GET) || method.equals(METHOD_HEAD))) {
+            if (entry.checkIfNoneMatch(ifNoneMatch)) {
+                entry.setHeaders(resp, false);
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                reqEntry.remove();
+                return;
+            }
+        }
+
         super.service(req, resp);
 
         // when the servlet container does a 304 not modified, Content-Type is
@@ -182,7 +237,7 @@ public class ResourceServlet extends HttpServlet {
         // according to the HTTP spec, it's okay to set any meta header about the
         // content in a 304 as long as they are true for the original resource.
         if (resp.getContentType() == null && !resp.isCommitted()) {
-            entry.setHeaders(resp);
+            entry.setHeaders(resp, false);
         }
 
         reqEntry.remove();
@@ -257,9 +312,10 @@ public class ResourceServlet extends HttpServlet {
         private String suffix;
 
         private Object toServe;
-        private byte[] toServeBytes;
+        private ByteBuffer toServeBuffer;
         private String jsonp;
         private boolean gzip;
+        private boolean eTagChecked;
 
         public RequestEntry(String prefix, String path, boolean gzip, String jsonp) {
 
@@ -269,8 +325,9 @@ public class ResourceServlet extends HttpServlet {
 
             initPathFileSuffix(path);
 
+            // only resolve what to serve here, the bytes are built first when a
+            // body is to be sent, see getToServeBuffer().
             initToServe();
-            initToServeBytes();
 
         }
 
@@ -310,17 +367,19 @@ public class ResourceServlet extends HttpServlet {
             try {
 
                 if (path.equals("")) {
-                    toServe = new BundleNames(mapper, jsonp);
+                    toServe = toServeCache.getBundleNames(jsonp);
                 } else if (Bundle.BUNDLE_ALLOWED_CHARS.matcher(file).matches()) {
                     Bundle bundle = resolver.getBundle(file);
                     if (bundle != null) {
-                        bundle.checkModified();
+                        if (bundle.checkModified()) {
+                            toServeCache.drop(bundle);
+                        }
                         if (suffix.equals("")) {
-                            toServe = new ToServeBundle(mapper, bundle, jsonp);
+                            toServe = toServeCache.getBundle(bundle, jsonp);
                         } else if (suffix.equals(SUFFIX_ADD_JS)) {
-                            toServe = new Bootstrap(mapper, prefix, bundle, true);
+                            toServe = toServeCache.getBootstrap(prefix, bundle, true);
                         } else if (suffix.equals(SUFFIX_JS)) {
-                            toServe = new Bootstrap(mapper, prefix, bundle, false);
+                            toServe = toServeCache.getBootstrap(prefix, bundle, false);
                         } else {
                             toServe = null;
                         }
@@ -342,21 +401,21 @@ public class ResourceServlet extends HttpServlet {
 
         }
 
-        private void initToServeBytes() {
-            if (toServe != null && toServe instanceof ToServe) {
-                toServeBytes = ((ToServe) toServe).getBytes();
-                if (gzip) {
-                    try {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        GZIPOutputStream os = new GZIPOutputStream(baos);
-                        os.write(toServeBytes);
-                        os.close();
-                        toServeBytes = baos.toByteArray();
-                    } catch (IOException e) {
-                        throw new RuntimeException("Failed to comress gzip", e);
-                    }
+        /**
+         * The bytes to send, as a buffer so that bytes kept off heap are written without first copying them to the
+         * heap.
+         */
+        private ByteBuffer getToServeBuffer() {
+            if (toServeBuffer == null) {
+                ToServe t = (ToServe) toServe;
+                if (t instanceof HasByteBuffer) {
+                    HasByteBuffer b = (HasByteBuffer) t;
+                    toServeBuffer = gzip ? b.getGzipByteBuffer() : b.getByteBuffer();
+                } else {
+                    toServeBuffer = ByteBuffer.wrap(gzip ? t.getGzipBytes() : t.getBytes());
                 }
             }
+            return toServeBuffer;
         }
 
         public void serve(HttpServletResponse resp, boolean head) throws IOException {
@@ -376,6 +435,14 @@ public class ResourceServlet extends HttpServlet {
 
             } else if (toServe instanceof ToServe) {
 
+                // the bytes are built lazily, so bad arguments may surface
+                // first here. failures to build the bytes are left as 500.
+                try {
+                    getToServeBuffer();
+                } catch (IllegalArgumentException iae) {
+                    serve400(resp, iae.getMessage());
+                    return;
+                }
                 serveDefault(resp, head, (ToServe) toServe);
 
             }
@@ -396,18 +463,21 @@ public class ResourceServlet extends HttpServlet {
 
         private void serveDefault(HttpServletResponse resp, boolean head, ToServe toServe) throws IOException {
 
-            setHeaders(resp);
+            setHeaders(resp, true);
             if (gzip) {
                 resp.setHeader(HEADER_CONTENT_ENCODING, VALUE_GZIP);
             }
             if (!head) {
-                OutputStream os = resp.getOutputStream();
-                os.write(toServeBytes);
+                ContentWriter.write(getToServeBuffer(), resp);
             }
 
         }
 
-        public void setHeaders(HttpServletResponse resp) {
+        /**
+         * Sets the headers describing the resource. The content length is only set when a body is to be sent, since
+         * that is what forces the bytes to be built (and compressed).
+         */
+        public void setHeaders(HttpServletResponse resp, boolean withBody) {
 
             if (toServe != null && toServe instanceof ToServe) {
 
@@ -415,8 +485,14 @@ public class ResourceServlet extends HttpServlet {
 
                 resp.setDateHeader(HEADER_DATE, System.currentTimeMillis());
                 resp.setContentType(t.getContentType());
-                resp.setContentLength(toServeBytes.length);
+                if (withBody) {
+                    resp.setContentLength(getToServeBuffer().remaining());
+                }
                 resp.setDateHeader(HEADER_LAST_MODIFIED, t.getLastModified());
+                String eTag = getETag();
+                if (eTag != null) {
+                    resp.setHeader(HEADER_ETAG, eTag);
+                }
 
                 // some web caches are buggy and can't handle compressed
                 // resources, in which
@@ -450,13 +526,62 @@ public class ResourceServlet extends HttpServlet {
 
         public long getLastModified() {
 
-            if (toServe != null && toServe instanceof ToServe) {
+            // when the entity tag has been compared, If-Modified-Since must
+            // not be considered. -1 makes HttpServlet go straight to doGet.
+            if (!eTagChecked && toServe != null && toServe instanceof ToServe) {
                 return ((ToServe) toServe).getLastModified();
             }
 
             return -1;
 
         }
+
+        /**
+         * The entity tag of what is to be served. The gzipped variant gets its own tag, since it is a different
+         * representation of the same resource.
+         */
+        public String getETag() {
+
+            if (toServe != null && toServe instanceof ToServe) {
+                String eTag = ((ToServe) toServe).getETag();
+                if (eTag != null && gzip) {
+                    eTag = eTag.substring(0, eTag.length() - 1) + "-" + VALUE_GZIP + "\"";
+                }
+                return eTag;
+            }
+
+            return null;
+
+        }
+
+        /**
+         * Compares the entity tag with the given If-None-Match header value.
+         * 
+         * @return true if any of the tags in the header matches, which means the client has what would be served.
+         */
+        public boolean checkIfNoneMatch(String ifNoneMatch) {
+
+            String eTag = getETag();
+            if (eTag == null) {
+                return false;
+            }
+
+            eTagChecked = true;
+
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                // weak comparison is allowed for If-None-Match
+                if (tag.startsWith(PREFIX_WEAK)) {
+                    tag = tag.substring(PREFIX_WEAK.length());
+                }
+                if (tag.equals(VALUE_ANY) || tag.equals(eTag)) {
+                    return true;
+                }
+            }
+
+            return false;
+
+        }
     }
 
 }
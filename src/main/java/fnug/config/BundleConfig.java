@@ -33,6 +33,16 @@ public interface BundleConfig {
      */
     static final boolean DEFAULT_CHECK_MODIFIED = true;
 
+    /**
+     * Value of {@link #cssCompressor()} for the modified YUICompressor. Set to {@value} .
+     */
+    static final String CSS_COMPRESSOR_YUI = "yui";
+
+    /**
+     * Value of {@link #cssCompressor()} for {@link fnug.util.CssMinifier}. Set to {@value} .
+     */
+    static final String CSS_COMPRESSOR_FAST = "fast";
+
     /**
      * Returns the resource responsible for this configuration.
      * 
@@ -76,6 +86,14 @@ public interface BundleConfig {
      */
     String[] jsCompileArgs();
 
+    /**
+     * The compressor used for css, either {@link #CSS_COMPRESSOR_YUI} or {@link #CSS_COMPRESSOR_FAST}. Both give the
+     * same output, the latter is quicker. <code>null</code> means {@link #CSS_COMPRESSOR_YUI}.
+     * 
+     * @return name of the css compressor.
+     */
+    String cssCompressor();
+
     /**
      * Files that comprises this bundle. Additional dependencies will be discovered using
      * {@link Resource#findRequiresTags()}.
@@ -33,6 +33,7 @@ public class DefaultBundleConfig implements BundleConfig {
     private String[] jsLintArgs;
     private int checkModifiedInterval;
     private String[] jsCompileArgs;
+    private String cssCompressor;
     private String[] files;
 
     /**
@@ -55,6 +56,31 @@ public class DefaultBundleConfig implements BundleConfig {
      */
     public DefaultBundleConfig(Resource configResource, String name, String basePath, String[] jsLintArgs,
             int checkModifiedInterval, String[] jsCompileArgs, String[] files) {
+        this(configResource, name, basePath, jsLintArgs, checkModifiedInterval, jsCompileArgs, null, files);
+    }
+
+    /**
+     * Constructs setting all configurations.
+     * 
+     * @param configResource
+     *            Resource that built this instance.
+     * @param name
+     *            See {@link #name()}
+     * @param basePath
+     *            See {@link #basePath()}
+     * @param jsLintArgs
+     *            See {@link #jsLintArgs()}
+     * @param checkModifiedInterval
+     *            See {@link #checkModifiedInterval()}
+     * @param jsCompileArgs
+     *            See {@link #jsCompileArgs()}
+     * @param cssCompressor
+     *            See {@link #cssCompressor()}
+     * @param files
+     *            See {@link #files()}
+     */
+    public DefaultBundleConfig(Resource configResource, String name, String basePath, String[] jsLintArgs,
+            int checkModifiedInterval, String[] jsCompileArgs, String cssCompressor, String[] files) {
         this.configResource = configResource;
         if (!Bundle.BUNDLE_ALLOWED_CHARS.matcher(name).matches()) {
             throw new IllegalArgumentException("Bundle name must match: " + Bundle.BUNDLE_ALLOWED_CHARS.toString());
@@ -64,6 +90,7 @@ public class DefaultBundleConfig implements BundleConfig {
         this.jsLintArgs = jsLintArgs;
         this.checkModifiedInterval = checkModifiedInterval;
         this.jsCompileArgs = jsCompileArgs;
+        this.cssCompressor = cssCompressor;
         this.files = files;
     }
 
@@ -115,6 +142,14 @@ public class DefaultBundleConfig implements BundleConfig {
         return jsCompileArgs;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String cssCompressor() {
+        return cssCompressor;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1,13 +1,26 @@
 package fnug.config;
 
+import java.io.File;
+
 public class GlobalConfig {
 
     private static final String FNUG_OPTS_ENV = "FNUG_OPTS";
     private static final String FNUG_OPTS_PROP = "fnug.opts";
+    private static final String OPT_CACHEDIR = "cachedir=";
+    private static final String OPT_PRECOMPILE_THREADS = "precompilethreads=";
 
     private boolean noModify;
     private boolean precompile;
     private boolean noJsLint;
+    private boolean asyncCompile;
+    private boolean watch;
+    private boolean requiresHeader;
+    private boolean offHeap;
+    private boolean extractJars;
+    private boolean warmCompile;
+    private boolean perFileCompile;
+    private File cacheDir;
+    private int precompileThreads;
 
     public static GlobalConfig createFromEnv() {
 
@@ -38,6 +51,31 @@ public class GlobalConfig {
                 setPrecompile(true);
             } else if (opt.equalsIgnoreCase("nojslint")) {
                 setNoJsLint(true);
+            } else if (opt.equalsIgnoreCase("asynccompile")) {
+                setAsyncCompile(true);
+            } else if (opt.equalsIgnoreCase("watch")) {
+                setWatch(true);
+            } else if (opt.equalsIgnoreCase("requiresheader")) {
+                setRequiresHeader(true);
+            } else if (opt.equalsIgnoreCase("offheap")) {
+                setOffHeap(true);
+            } else if (opt.equalsIgnoreCase("extractjars")) {
+                setExtractJars(true);
+            } else if (opt.equalsIgnoreCase("warmcompile")) {
+                setWarmCompile(true);
+            } else if (opt.equalsIgnoreCase("perfilecompile")) {
+                setPerFileCompile(true);
+            } else if (opt.toLowerCase().startsWith(OPT_CACHEDIR)) {
+                String dir = opt.substring(OPT_CACHEDIR.length()).trim();
+                if (dir.length() > 0) {
+                    setCacheDir(new File(dir));
+                }
+            } else if (opt.toLowerCase().startsWith(OPT_PRECOMPILE_THREADS)) {
+                try {
+                    setPrecompileThreads(Integer.parseInt(opt.substring(OPT_PRECOMPILE_THREADS.length()).trim()));
+                } catch (NumberFormatException nfe) {
+                    throw new IllegalArgumentException("Bad option: " + opt);
+                }
             }
 
         }
@@ -71,4 +109,76 @@ public class GlobalConfig {
         this.noJsLint = noJsLint;
     }
 
+    public boolean isAsyncCompile() {
+        return asyncCompile;
+    }
+
+    public void setAsyncCompile(boolean asyncCompile) {
+        this.asyncCompile = asyncCompile;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public boolean isRequiresHeader() {
+        return requiresHeader;
+    }
+
+    public void setRequiresHeader(boolean requiresHeader) {
+        this.requiresHeader = requiresHeader;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public boolean isExtractJars() {
+        return extractJars;
+    }
+
+    public void setExtractJars(boolean extractJars) {
+        this.extractJars = extractJars;
+    }
+
+    public boolean isWarmCompile() {
+        return warmCompile;
+    }
+
+    public void setWarmCompile(boolean warmCompile) {
+        this.warmCompile = warmCompile;
+    }
+
+    public boolean isPerFileCompile() {
+        return perFileCompile;
+    }
+
+    public void setPerFileCompile(boolean perFileCompile) {
+        this.perFileCompile = perFileCompile;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public int getPrecompileThreads() {
+        return precompileThreads;
+    }
+
+    public void setPrecompileThreads(int precompileThreads) {
+        this.precompileThreads = precompileThreads;
+    }
+
 }
@@ -50,6 +50,7 @@ public class JsonConfigParser implements ConfigParser {
     private static final String KEY_JS_LINT = "jsLint";
     private static final String KEY_CHECK_MODIFIED = "checkModified";
     private static final String KEY_JS_COMPILER_ARGS = "jsCompilerArgs";
+    private static final String KEY_CSS_COMPRESSOR = "cssCompressor";
     private static final String KEY_FILES = "files";
     private static final String KEY_BASE_PATH = "basePath";
     private static final HashSet<String> ALL_KEYS = new HashSet<String>();
@@ -58,6 +59,7 @@ public class JsonConfigParser implements ConfigParser {
         ALL_KEYS.add(KEY_JS_LINT);
         ALL_KEYS.add(KEY_CHECK_MODIFIED);
         ALL_KEYS.add(KEY_JS_COMPILER_ARGS);
+        ALL_KEYS.add(KEY_CSS_COMPRESSOR);
         ALL_KEYS.add(KEY_FILES);
         ALL_KEYS.add(KEY_BASE_PATH);
     }
@@ -173,6 +175,7 @@ public class JsonConfigParser implements ConfigParser {
         int checkModifiedInterval = parseInt(node, KEY_CHECK_MODIFIED, loc,
                 DefaultResource.DEFAULT_CHECK_MODIFIED_INTERVAL);
         String[] jsCompileArgs = parseStringArray(node, KEY_JS_COMPILER_ARGS, loc, EMPTY_STRINGS);
+        String cssCompressor = parseString(node, KEY_CSS_COMPRESSOR, loc, BundleConfig.CSS_COMPRESSOR_YUI);
         String[] files = parseStringArray(node, KEY_FILES, loc, EMPTY_STRINGS);
         String basePath = parseString(node, KEY_BASE_PATH, loc, configResource.getBasePath());
 
@@ -188,6 +191,12 @@ public class JsonConfigParser implements ConfigParser {
 
         }
 
+        if (!cssCompressor.equals(BundleConfig.CSS_COMPRESSOR_YUI)
+                && !cssCompressor.equals(BundleConfig.CSS_COMPRESSOR_FAST)) {
+            throw new JsonConfigParseException(loc, "'cssCompressor' must be '" + BundleConfig.CSS_COMPRESSOR_YUI
+                    + "' or '" + BundleConfig.CSS_COMPRESSOR_FAST + "': " + cssCompressor);
+        }
+
         for (String file : files) {
             if (file.startsWith("/")) {
                 throw new JsonConfigParseException(loc, "File path must not start with slash: " + file);
@@ -195,7 +204,7 @@ public class JsonConfigParser implements ConfigParser {
         }
 
         return new DefaultBundleConfig(configResource, name, basePath, jsLintArgs,
-                checkModifiedInterval, jsCompileArgs,
+                checkModifiedInterval, jsCompileArgs, cssCompressor,
                 files);
     }
 
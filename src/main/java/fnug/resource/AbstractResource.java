@@ -1,8 +1,12 @@
 package fnug.resource;
 
+import java.nio.ByteBuffer;
+
 import javax.activation.FileTypeMap;
 import javax.activation.MimetypesFileTypeMap;
 
+import fnug.util.IOUtils;
+
 /*
  Copyright 2010 Martin Algesten
 
@@ -26,7 +30,7 @@ import javax.activation.MimetypesFileTypeMap;
  * @author Martin Algesten
  * 
  */
-public abstract class AbstractResource implements Resource {
+public abstract class AbstractResource implements Resource, HasGzipBytes, HasETag, HasByteBuffer {
 
     /**
      * Content type <code>text/css</code>.
@@ -45,7 +49,12 @@ public abstract class AbstractResource implements Resource {
     private String path;
     private volatile boolean doReadEntry = true;
     private byte[] bytes;
-    private Long lastModified; // null = not read, -1 = not exist
+    private ByteBuffer buffer; // instead of bytes when kept off heap
+    private volatile Long lastModified; // null = not read, -1 = not exist
+    private volatile byte[] gzipBytes;
+    private volatile ByteBuffer gzipBuffer;
+    private volatile int readCount;
+    private volatile String eTag;
 
     /**
      * Constructor setting necessary fields.
@@ -121,12 +130,53 @@ public abstract class AbstractResource implements Resource {
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} Bytes that {@link #readEntry()} gave as a buffer are copied on every call, see
+     * {@link #getByteBuffer()}.
      */
     @Override
     public byte[] getBytes() {
         ensureReadEntry();
-        return bytes;
+        ByteBuffer buf = buffer;
+        return buf == null ? bytes : IOUtils.toBytes(buf);
+    }
+
+    /**
+     * {@inheritDoc} This is the buffer {@link #readEntry()} gave, or else the bytes wrapped.
+     */
+    @Override
+    public ByteBuffer getByteBuffer() {
+        ensureReadEntry();
+        ByteBuffer buf = buffer;
+        return buf == null ? ByteBuffer.wrap(getBytes()) : buf.duplicate();
+    }
+
+    /**
+     * Tells if the bytes are kept outside of the heap, in which case so is the gzipped variant of them.
+     * 
+     * @return true if {@link #readEntry()} gave the bytes as a buffer.
+     */
+    protected boolean isOffHeap() {
+        ensureReadEntry();
+        return buffer != null;
+    }
+
+    /**
+     * Number of times the entry has been read. Lets subclasses tell whether something they derived from the bytes is
+     * from the current entry.
+     * 
+     * @return the number of times {@link #readEntry()} has been called.
+     */
+    protected int getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * The last modified date as of the last read of the entry, without reading it or checking whether it changed.
+     * 
+     * @return the last modified date, -1 if the resource didn't exist, or null if the entry hasn't been read.
+     */
+    protected Long peekLastModified() {
+        return lastModified;
     }
 
     /**
@@ -144,7 +194,7 @@ public abstract class AbstractResource implements Resource {
             }
             return true;
         } else {
-            assert bytes != null : "Bytes null when lastModified isn't";
+            assert bytes != null || buffer != null : "Bytes null when lastModified isn't";
         }
         return false;
     }
@@ -152,17 +202,82 @@ public abstract class AbstractResource implements Resource {
     // must be called inside synchronized monitor
     private void doReadEntry() {
         Entry e = readEntry();
-        if (e.bytes == null) {
+        if (e.bytes == null && e.buffer == null) {
             throw new IllegalStateException("Null bytes not allowed: " + getFullPath());
         }
         if (e.lastModified == 0) {
             throw new IllegalStateException("0 lastModified not allowed " + getFullPath());
         }
         bytes = e.bytes;
+        buffer = e.buffer;
         lastModified = e.lastModified;
+        gzipBytes = null;
+        gzipBuffer = null;
+        eTag = null;
+        readCount++;
         doReadEntry = false;
     }
 
+    /**
+     * {@inheritDoc} The gzipped bytes are built from {@link #getBytes()} on first access and dropped together with the
+     * bytes when {@link #checkModified()} finds the resource changed.
+     */
+    @Override
+    public byte[] getGzipBytes() {
+        if (isOffHeap()) {
+            return IOUtils.toBytes(getGzipByteBuffer());
+        }
+        byte[] result = gzipBytes;
+        if (result == null) {
+            synchronized (this) {
+                result = gzipBytes;
+                if (result == null) {
+                    gzipBytes = result = IOUtils.gzip(getBytes());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc} Kept in a direct buffer if the bytes are kept off heap, see {@link #isOffHeap()}.
+     */
+    @Override
+    public ByteBuffer getGzipByteBuffer() {
+        if (!isOffHeap()) {
+            return ByteBuffer.wrap(getGzipBytes());
+        }
+        ByteBuffer result = gzipBuffer;
+        if (result == null) {
+            synchronized (this) {
+                result = gzipBuffer;
+                if (result == null) {
+                    gzipBuffer = result = IOUtils.direct(IOUtils.gzip(getBytes()));
+                }
+            }
+        }
+        return result.duplicate();
+    }
+
+    /**
+     * {@inheritDoc} The tag is an md5 sum of {@link #getBytes()}, calculated on first access and dropped together with
+     * the bytes when {@link #checkModified()} finds the resource changed.
+     */
+    @Override
+    public String getETag() {
+        ensureReadEntry();
+        String result = eTag;
+        if (result == null) {
+            synchronized (this) {
+                result = eTag;
+                if (result == null) {
+                    eTag = result = "\"" + IOUtils.md5(getBytes()) + "\"";
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -226,12 +341,26 @@ public abstract class AbstractResource implements Resource {
     protected class Entry {
         long lastModified;
         byte[] bytes;
+        ByteBuffer buffer;
 
         public Entry(long lastModified, byte[] bytes) {
             this.lastModified = lastModified;
             this.bytes = bytes;
         }
 
+        /**
+         * Constructs with bytes kept in a buffer, such as a memory mapped file, rather than on the heap.
+         * 
+         * @param lastModified
+         *            the last modified date.
+         * @param buffer
+         *            the bytes, from position to limit.
+         */
+        public Entry(long lastModified, ByteBuffer buffer) {
+            this.lastModified = lastModified;
+            this.buffer = buffer;
+        }
+
     }
 
     /**
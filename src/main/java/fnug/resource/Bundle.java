@@ -86,8 +86,9 @@ public interface Bundle {
     /**
      * Checks whether this bundle is modified by calling checkModified() on the {@link #getResourceCollections()}. This
      * does not call checkModified() on the {@link BundleConfig#configResource()} since that is being checked by the
-     * {@link Resolver}. If any resource is found to have changed, the built {@link #getResourceCollections()} are
-     * dropped and (lazily) rebuilt.
+     * {@link Resolver}. If any resource is found to have changed in a way that changes the dependencies, the built
+     * {@link #getResourceCollections()} are dropped and (lazily) rebuilt. Otherwise the collections are kept and only
+     * rebuild their aggregated bytes.
      * 
      * @return true if any resource has changed.
      */
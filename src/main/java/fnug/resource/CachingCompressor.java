@@ -0,0 +1,179 @@
+package fnug.resource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * {@link Compressor} that keeps the output of another compressor on disk, so that the same input compressed with the
+ * same arguments is only compiled once, also across restarts. Files are named by an md5 sum of the compressor, its
+ * arguments and the input bytes, which means a changed source or changed arguments simply misses the cache. Nothing is
+ * ever removed from the cache directory.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class CachingCompressor implements Compressor {
+
+    private final static Logger LOG = LoggerFactory.getLogger(CachingCompressor.class);
+
+    private Compressor compressor;
+    private File cacheDir;
+    private String keyPrefix;
+
+    /**
+     * Constructs wrapping the given compressor.
+     * 
+     * @param compressor
+     *            the compressor doing the actual work.
+     * @param cacheDir
+     *            directory to keep the compressed files in. Created if it doesn't exist.
+     * @param args
+     *            arguments the wrapped compressor was created with. They are part of the cache key.
+     */
+    public CachingCompressor(Compressor compressor, File cacheDir, String... args) {
+        this.compressor = compressor;
+        this.cacheDir = cacheDir;
+        StringBuilder bld = new StringBuilder();
+        bld.append(compressor.getClass().getName()).append('\n');
+        bld.append(compressor.name()).append('\n');
+        if (args != null) {
+            for (String arg : args) {
+                bld.append(arg).append('\n');
+            }
+        }
+        this.keyPrefix = bld.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return compressor.name();
+    }
+
+    /**
+     * Returns the wrapped compressor.
+     * 
+     * @return the wrapped compressor.
+     */
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Reads the compressed bytes from the cache directory, or compresses using the wrapped compressor and stores the
+     * result. Failing to read or write the cache is logged and falls back to compressing. Failed compilations are
+     * never cached.
+     */
+    @Override
+    public byte[] compress(byte[] input) {
+
+        if (input == null) {
+            return compressor.compress(input);
+        }
+
+        File file = new File(cacheDir, key(input) + "." + (compressor.name().equals("css") ? "css" : "js"));
+
+        if (file.isFile()) {
+            try {
+                byte[] cached = read(file);
+                LOG.debug("Using cached " + compressor.name() + ": " + file);
+                return cached;
+            } catch (IOException ioe) {
+                LOG.warn("Failed to read cached " + compressor.name() + ": " + file, ioe);
+            }
+        }
+
+        byte[] result = compressor.compress(input);
+
+        if (result != null) {
+            try {
+                write(file, result);
+            } catch (IOException ioe) {
+                LOG.warn("Failed to write cached " + compressor.name() + ": " + file, ioe);
+            }
+        }
+
+        return result;
+
+    }
+
+    String key(byte[] input) {
+        return IOUtils.md5(keyPrefix + IOUtils.md5(input));
+    }
+
+    private byte[] read(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[(int) file.length()];
+            int pos = 0;
+            int read;
+            while (pos < buf.length && (read = is.read(buf, pos, buf.length - pos)) != -1) {
+                pos += read;
+            }
+            if (pos != buf.length) {
+                throw new IOException("Short read of " + file);
+            }
+            return buf;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Writes to a temporary file in the same directory and renames into place, so that concurrent writers or a
+     * process killed halfway never leave a partial file under the real name.
+     */
+    private void write(File file, byte[] bytes) throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs() && !cacheDir.isDirectory()) {
+            throw new IOException("Failed to create cache dir: " + cacheDir);
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", cacheDir);
+        try {
+            OutputStream os = new FileOutputStream(tmp);
+            try {
+                os.write(bytes);
+            } finally {
+                os.close();
+            }
+            if (!tmp.renameTo(file)) {
+                // another writer may have won the race, which is fine since
+                // the contents are the same.
+                if (!file.isFile()) {
+                    throw new IOException("Failed to rename " + tmp + " to " + file);
+                }
+            }
+        } finally {
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+}
@@ -4,7 +4,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,21 +42,27 @@ public class DefaultBundle implements Bundle {
     private static final String SUFFIX_JS = "js";
 
     /**
-     * Arbitrary max size for cached resources. We want to avoid filling the heap space with resources pointing to
-     * non-existing files. If we hit this limit, something is probably wrong.
+     * Max number of resources kept without knowing whether their files exist. We want to avoid filling the heap space
+     * with resources for any path someone cares to ask for, so beyond this the oldest are checked and dropped if
+     * their files don't exist.
      */
-    private static final int MAX_CACHE = 10000;
+    private static final int MAX_UNCHECKED = 1000;
 
     private static final String PREFIX_BUNDLE = "bundle:";
 
     private BundleConfig config;
 
-    private HashMap<String, Resource> cache = new HashMap<String, Resource>();
+    private ConcurrentHashMap<String, Resource> cache = new ConcurrentHashMap<String, Resource>();
+    private ConcurrentLinkedQueue<String> unchecked = new ConcurrentLinkedQueue<String>();
+    private AtomicInteger uncheckedCount = new AtomicInteger();
 
     private volatile ResourceCollection[] resourceCollections;
+    private volatile long checkedGeneration = -1;
+    private volatile Edges[] edges;
     private HashMap<String, ResourceCollection> previousResourceCollections = new HashMap<String, ResourceCollection>();
 
-    private Pattern bundlePattern;
+    private volatile CollectionIndex collectionIndex;
+    private volatile int collectionPathsVersion;
 
     private volatile JSLintWrapper jsLintWrapper;
 
@@ -65,8 +74,6 @@ public class DefaultBundle implements Bundle {
      */
     public DefaultBundle(BundleConfig config) {
         this.config = config;
-        bundlePattern = Pattern.compile(getName() + "/" +
-                Bundle.BUNDLE_ALLOWED_CHARS.pattern() + "-[a-f0-9]+\\.(js|css)");
     }
 
     /**
@@ -91,17 +98,16 @@ public class DefaultBundle implements Bundle {
     @Override
     public Resource resolve(String path) {
 
-        if (bundlePattern.matcher(path).matches()) {
+        int dot = collectionSuffixIndex(path);
 
-            String collFile = path;
-            int indx = collFile.indexOf(".");
-            String collPath = collFile.substring(0, indx);
-            String suffix = collFile.substring(indx + 1);
+        if (dot > 0) {
+
+            String collPath = path.substring(getName().length() + 1, dot);
 
             ResourceCollection c = getResourceCollection(collPath);
 
             if (c != null) {
-                return getCompressedBySuffix(c, suffix);
+                return dot == path.length() - 1 - SUFFIX_JS.length() ? c.getCompressedJs() : c.getCompressedCss();
             }
 
             // do not return null here, but proceed to return "normal" resource.
@@ -109,19 +115,48 @@ public class DefaultBundle implements Bundle {
         }
 
         Resource res = cache.get(path);
-        if (res == null) {
-            synchronized (this) {
-                res = cache.get(path);
-                if (res == null) {
-                    if (cache.size() > MAX_CACHE) {
-                        throw new IllegalStateException("Cache is larger than " + MAX_CACHE);
-                    }
-                    res = makeResource(path);
-                    cache.put(path, res);
-                }
-            }
+        if (res != null) {
+            return res;
         }
+
+        // not read here, the resource is only read when used.
+        res = makeResource(path);
+
+        Resource prev = cache.putIfAbsent(path, res);
+        if (prev != null) {
+            return prev;
+        }
+
+        unchecked.add(path);
+        if (uncheckedCount.incrementAndGet() > MAX_UNCHECKED) {
+            checkOldest();
+        }
+
         return res;
+
+    }
+
+    /**
+     * Checks the oldest resource beyond {@link #MAX_UNCHECKED} and drops it unless it has been read and exists. This
+     * only looks at what the resource already read, the request thread never goes to disk for it, and a resource
+     * that was never read holds nothing but its path. A resource that exists is kept for good. Each path is queued
+     * once, when its resource is added, and leaves the queue when checked. A dropped path that is asked for again is
+     * queued anew, last.
+     */
+    private void checkOldest() {
+        String path = unchecked.poll();
+        if (path == null) {
+            return;
+        }
+        uncheckedCount.decrementAndGet();
+        Resource res = cache.get(path);
+        if (res == null) {
+            return;
+        }
+        Long l = res instanceof AbstractResource ? ((AbstractResource) res).peekLastModified() : null;
+        if (l == null || l == -1) {
+            cache.remove(path, res);
+        }
     }
 
     /**
@@ -156,23 +191,69 @@ public class DefaultBundle implements Bundle {
         return result;
     }
 
-    private ResourceCollection getResourceCollection(String collPath) {
-        ResourceCollection[] colls = getResourceCollections();
-        for (ResourceCollection coll : colls) {
-            if (coll.getFullPath().equals(collPath)) {
-                return coll;
-            }
+    /**
+     * Tells if the path is that of a compressed resource collection of this bundle, i.e.
+     * <code>&lt;bundle name&gt;/&lt;name&gt;-&lt;hex&gt;.js</code> or <code>.css</code>, without using a regexp.
+     * 
+     * @param path
+     *            path to check.
+     * @return the index of the suffix dot, or -1 if the path isn't that of a resource collection.
+     */
+    private int collectionSuffixIndex(String path) {
+        String name = getName();
+        int start = name.length() + 1;
+        int len = path.length();
+        if (len <= start || !path.startsWith(name) || path.charAt(name.length()) != '/') {
+            return -1;
         }
-        return null;
+        int dot;
+        if (path.endsWith("." + SUFFIX_JS)) {
+            dot = len - 1 - SUFFIX_JS.length();
+        } else if (path.endsWith("." + SUFFIX_CSS)) {
+            dot = len - 1 - SUFFIX_CSS.length();
+        } else {
+            return -1;
+        }
+        int i = start;
+        while (i < dot && isNameChar(path.charAt(i))) {
+            i++;
+        }
+        if (i == start || i == dot || path.charAt(i) != '-') {
+            return -1;
+        }
+        int hexStart = ++i;
+        while (i < dot && isHexChar(path.charAt(i))) {
+            i++;
+        }
+        return i == dot && i > hexStart ? dot : -1;
     }
 
-    private Resource getCompressedBySuffix(ResourceCollection c, String suffix) {
-        if (suffix.equals(SUFFIX_JS)) {
-            return c.getCompressedJs();
-        } else if (suffix.equals(SUFFIX_CSS)) {
-            return c.getCompressedCss();
+    // same as Bundle.BUNDLE_ALLOWED_CHARS
+    private static boolean isNameChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    private static boolean isHexChar(char c) {
+        return c >= 'a' && c <= 'f' || c >= '0' && c <= '9';
+    }
+
+    /**
+     * Looks up a resource collection by its {@link ResourceCollection#getPath()}. The index is built once for every
+     * set of collections, and again when {@link #checkModified()} found a modification, since a collection's path
+     * changes when its resources are modified. A miss is just a miss.
+     * 
+     * @param collPath
+     *            the path of the resource collection.
+     * @return the resource collection or null if not found.
+     */
+    private ResourceCollection getResourceCollection(String collPath) {
+        ResourceCollection[] colls = getResourceCollections();
+        int version = collectionPathsVersion;
+        CollectionIndex index = collectionIndex;
+        if (index == null || index.colls != colls || index.version != version) {
+            collectionIndex = index = new CollectionIndex(colls, version);
         }
-        return null;
+        return index.get(collPath);
     }
 
     private ResourceCollection[] buildResourceCollections(boolean checkModifiedOnBuild) {
@@ -183,6 +264,14 @@ public class DefaultBundle implements Bundle {
 
         List<Resource> order = tarjan.getResult();
 
+        Map<Resource, List<String>> requiresTags = tarjan.getRequiresTags();
+        Edges[] newEdges = new Edges[requiresTags.size()];
+        int j = 0;
+        for (Map.Entry<Resource, List<String>> e : requiresTags.entrySet()) {
+            newEdges[j++] = new Edges(e.getKey(), e.getValue());
+        }
+        edges = newEdges;
+
         LinkedHashMap<Bundle, List<Resource>> bundleResources = new LinkedHashMap<Bundle, List<Resource>>();
 
         for (Resource r : order) {
@@ -261,6 +350,53 @@ public class DefaultBundle implements Bundle {
         return l;
     }
 
+    /**
+     * Tells whether the dependency graph the resource collections were built from may have changed. Only the resources
+     * with a new last modified date are scanned for requires tags again.
+     */
+    private boolean edgesChanged() {
+        Edges[] e = edges;
+        if (e == null) {
+            return true;
+        }
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        RequiresCache requiresCache = resolver == null ? null : resolver.getRequiresCache();
+        for (Edges ed : e) {
+            long lastModified = ed.resource.getLastModified();
+            if (lastModified == ed.lastModified) {
+                continue;
+            }
+            if (lastModified == -1 || ed.lastModified == -1) {
+                // appeared or disappeared.
+                return true;
+            }
+            List<String> requires = requiresCache == null ? ed.resource.findRequiresTags() : requiresCache.get(
+                    ed.resource).getTags();
+            if (!requires.equals(ed.requires)) {
+                return true;
+            }
+            ed.lastModified = lastModified;
+        }
+        return false;
+    }
+
+    /**
+     * The requires tags of a resource at the time the resource collections were built.
+     */
+    private static class Edges {
+
+        private Resource resource;
+        private List<String> requires;
+        private volatile long lastModified;
+
+        Edges(Resource resource, List<String> requires) {
+            this.resource = resource;
+            this.requires = requires;
+            this.lastModified = resource.getLastModified();
+        }
+
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -278,12 +414,34 @@ public class DefaultBundle implements Bundle {
      */
     @Override
     public boolean checkModified() {
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        FileWatcher watcher = null;
+        if (resolver != null && resolver.getGlobalConfig().isWatch()) {
+            watcher = resolver.getFileWatcher();
+        }
+        long generation = watcher == null ? -1 : watcher.getGeneration();
+        if (watcher != null && watcher.isComplete() && generation == checkedGeneration &&
+                resourceCollections != null) {
+            // nothing happened on disk since last check.
+            return false;
+        }
         boolean modified = false;
         for (ResourceCollection rc : getResourceCollections(true)) {
             modified = rc.checkModified() || modified;
         }
+        if (modified) {
+            // the modified collections have new paths.
+            collectionPathsVersion++;
+        }
+        if (modified && !edgesChanged()) {
+            // same files in the same order. the collections rebuild their
+            // aggregates by themselves.
+            checkedGeneration = generation;
+            return true;
+        }
         if (modified) {
             synchronized (this) {
+                edges = null;
                 if (resourceCollections != null) {
                     // save resource collections to perhaps be reused when rebuilding.
                     for (ResourceCollection rc : resourceCollections) {
@@ -293,6 +451,7 @@ public class DefaultBundle implements Bundle {
                 }
             }
         }
+        checkedGeneration = generation;
         return modified;
     }
 
@@ -318,4 +477,30 @@ public class DefaultBundle implements Bundle {
         return result;
     }
 
+    /**
+     * Resource collections by path.
+     */
+    private static class CollectionIndex {
+
+        private final ResourceCollection[] colls;
+        private final int version;
+        private final HashMap<String, ResourceCollection> byPath;
+
+        CollectionIndex(ResourceCollection[] colls, int version) {
+            this.colls = colls;
+            this.version = version;
+            byPath = new HashMap<String, ResourceCollection>(colls.length * 2);
+            for (ResourceCollection coll : colls) {
+                byPath.put(coll.getPath(), coll);
+            }
+        }
+
+        ResourceCollection get(String path) {
+            ResourceCollection coll = byPath.get(path);
+            // paths change on modification.
+            return coll != null && coll.getPath().equals(path) ? coll : null;
+        }
+
+    }
+
 }
@@ -1,10 +1,15 @@
 package fnug.resource;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fnug.util.IOUtils;
+
 /*
  Copyright 2010 Martin Algesten
 
@@ -26,6 +31,9 @@ import org.slf4j.LoggerFactory;
  * {@link ResourceCollection#getCompressedJs()} and {@link ResourceCollection#getCompressedCss()}. When a resource
  * change, this instance is dropped instead of reused since the change may make the aggregation be comprised of other
  * resources.
+ * <p>
+ * If constructed with an {@link Executor}, compression is asynchronous. Until the compressed bytes are ready, the
+ * uncompressed bytes are served, and the caller is never held up by the compiler. See {@link #isCompressed()}.
  * 
  * @author Martin Algesten
  * 
@@ -36,9 +44,17 @@ public class DefaultCompressedResource extends AbstractResource implements HasBu
 
     private Bundle bundle;
     private byte[] bytes;
-    private byte[] compressedBytes;
+    private volatile byte[] compressedBytes;
+    private volatile ByteBuffer compressedBuffer;
+    private boolean offHeap;
     private long lastModified;
     private Compressor compressor;
+    private Executor executor;
+    private Object compressLock = new Object();
+    private AtomicBoolean compressScheduled = new AtomicBoolean();
+    private volatile boolean compressFailed;
+    private volatile byte[] uncompressedGzipBytes;
+    private volatile String uncompressedETag;
 
     /**
      * Constructs setting all necessary fields.
@@ -60,11 +76,37 @@ public class DefaultCompressedResource extends AbstractResource implements HasBu
      */
     public DefaultCompressedResource(Bundle bundle, String basePath, String path, byte[] bytes, long lastModified,
             Compressor compressor) {
+        this(bundle, basePath, path, bytes, lastModified, compressor, null);
+    }
+
+    /**
+     * Constructs setting all necessary fields, compressing asynchronously using the given executor.
+     * 
+     * @param bundle
+     *            The associated bundle.
+     * @param basePath
+     *            Base path of the compressed resource.
+     * @param path
+     *            Path of the compressed resource.
+     * @param bytes
+     *            the bytes to compress.
+     * @param lastModified
+     *            The last modified date of the bytes.
+     * @param compressor
+     *            The compressor to use when compressing.
+     * @param executor
+     *            Executor to compress in, or null to compress in the thread calling {@link #getBytes()}.
+     */
+    public DefaultCompressedResource(Bundle bundle, String basePath, String path, byte[] bytes, long lastModified,
+            Compressor compressor, Executor executor) {
         super(basePath, path);
         this.bundle = bundle;
         this.bytes = bytes;
         this.lastModified = lastModified;
         this.compressor = compressor;
+        this.executor = executor;
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        this.offHeap = resolver != null && resolver.getGlobalConfig().isOffHeap();
     }
 
     /**
@@ -86,26 +128,147 @@ public class DefaultCompressedResource extends AbstractResource implements HasBu
     /**
      * Retrieves the bytes via the superclass {@link AbstractResource#getBytes()} (which ultimately leads to
      * {@link #readEntry()}). After that the compressed bytes are reused, never recompressed since the whole instance is
-     * dropped if any underlying resource changes.
+     * dropped if any underlying resource changes. When compressing asynchronously, the uncompressed bytes are returned
+     * until the compression is done. Compressed bytes kept off heap are copied on every call, see
+     * {@link #getByteBuffer()}.
      */
     @Override
     public byte[] getBytes() {
-        // delay compression until getBytes().
+        byte[] result = compressedBytes;
+        if (result != null) {
+            return result;
+        }
+        ByteBuffer buf = compressedBuffer;
+        if (buf != null) {
+            return IOUtils.toBytes(buf);
+        }
+        if (executor == null) {
+            return compress();
+        }
+        if (!compressFailed && compressScheduled.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compress();
+                    } catch (RuntimeException e) {
+                        compressFailed = true;
+                        LOG.error("Failed to compile " + compressor.name() + " of bundle '" + getBundle().getName()
+                                + "' for basePath: " + getBasePath() + ", serving uncompressed", e);
+                    }
+                }
+            });
+        }
+        return super.getBytes();
+    }
+
+    /**
+     * Compresses in the calling thread, unless already done. Used by {@link #getBytes()} and for precompiling.
+     * 
+     * @return the compressed bytes.
+     */
+    public byte[] compress() {
         byte[] result = compressedBytes;
         if (result == null) {
-            synchronized (this) {
+            // not the instance monitor, which AbstractResource holds while
+            // reading the entry, so the uncompressed bytes can be read while
+            // compressing.
+            synchronized (compressLock) {
                 result = compressedBytes;
-                if (result == null) {
+                ByteBuffer buf = compressedBuffer;
+                if (buf != null) {
+                    result = IOUtils.toBytes(buf);
+                } else if (result == null) {
                     byte[] superBytes = super.getBytes();
                     LOG.info("Compiling " + compressor.name() + " of bundle '" + getBundle().getName()
                             + "' for basePath: " + getBasePath());
-                    compressedBytes = result = compressor.compress(superBytes);
+                    result = compressor.compress(superBytes);
+                    if (offHeap && result != null) {
+                        compressedBuffer = IOUtils.direct(result);
+                    } else {
+                        compressedBytes = result;
+                    }
                 }
             }
         }
         return result;
     }
 
+    /**
+     * Tells whether {@link #getBytes()} returns compressed bytes. Always true after a call to {@link #getBytes()},
+     * {@link #getGzipBytes()} or {@link #getETag()}, unless compressing asynchronously.
+     * 
+     * @return true if the bytes are compressed.
+     */
+    public boolean isCompressed() {
+        return compressedBytes != null || compressedBuffer != null;
+    }
+
+    /**
+     * {@inheritDoc} Once compressed with {@link fnug.config.GlobalConfig#isOffHeap()} set, this is a direct buffer.
+     */
+    @Override
+    public ByteBuffer getByteBuffer() {
+        compressIfSync();
+        ByteBuffer buf = compressedBuffer;
+        if (buf != null) {
+            return buf.duplicate();
+        }
+        return ByteBuffer.wrap(getBytes());
+    }
+
+    /**
+     * The compressed bytes, and so the gzipped variant of them, are kept off heap if
+     * {@link fnug.config.GlobalConfig#isOffHeap()} is set.
+     */
+    @Override
+    protected boolean isOffHeap() {
+        compressIfSync();
+        return compressedBuffer != null;
+    }
+
+    /**
+     * Compresses in the calling thread unless compressing asynchronously, in which case the uncompressed bytes are
+     * served until the compression is done.
+     */
+    private void compressIfSync() {
+        if (executor == null) {
+            compress();
+        }
+    }
+
+    /**
+     * {@inheritDoc} When compressing asynchronously, the uncompressed bytes are gzipped until compressed.
+     */
+    @Override
+    public byte[] getGzipBytes() {
+        compressIfSync();
+        if (isCompressed()) {
+            return super.getGzipBytes();
+        }
+        byte[] result = uncompressedGzipBytes;
+        if (result == null) {
+            uncompressedGzipBytes = result = IOUtils.gzip(super.getBytes());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc} When compressing asynchronously, the tag is of the uncompressed bytes until compressed.
+     */
+    @Override
+    public String getETag() {
+        compressIfSync();
+        if (isCompressed()) {
+            return super.getETag();
+        }
+        String result = uncompressedETag;
+        if (result == null) {
+            uncompressedETag = result = "\"" + IOUtils.md5(super.getBytes()) + "\"";
+        }
+        return result;
+    }
+
     /**
      * Returns the last modified passed into constructor.
      */
@@ -4,17 +4,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,14 +54,21 @@ public class DefaultResource extends AbstractResource {
     private static final File TMP_EXTRACT_DIR;
 
     private static final byte[] EMPTY_BYTES = new byte[] {};
-    private final static Pattern REQUIRES_PAT = Pattern.compile("\\s*[*]\\s*@requires\\s+([^ \\t\\n\\x0B\\f\\r]+)");
+    private static final String PREFIX_JAR_FILE = "jar:file:";
 
-    private File jarFile;
+    private ExtractedJar extracted;
+    private int extractedGeneration;
     private File file;
+    private JarArchive archive;
+    private String entryName;
+    private long entryCrc;
 
     private long lastModifiedCheck;
     private int checkModifiedInterval;
     private Long cachedLastModified;
+    private volatile boolean watchChecked;
+    private FileWatcher.Watch watch;
+    private volatile RequiresTags requiresTags;
 
     static {
         try {
@@ -124,20 +127,54 @@ public class DefaultResource extends AbstractResource {
 
     /**
      * Reads the entry from the class loader using {@link Class#getResource(String)}. Also handles
-     * the case where that resource is in a jar file.
+     * the case where that resource is in a jar file, which is read through a {@link JarArchive}
+     * unless {@link fnug.config.GlobalConfig#isExtractJars()} is set.
      */
     @Override
     protected Entry readEntry() {
         URL url = doGetResourceURL(getFullPath());
         if (url == null) {
+            checkWatch(null);
             return new Entry(-1l, EMPTY_BYTES);
+        } else if (url.toExternalForm().startsWith(PREFIX_JAR_FILE)) {
+            // a change to the jar file is a change to every entry in it.
+            checkWatch(new File(splitJarUrl(url)[0]));
+            if (!isExtractJars()) {
+                return readJarEntry(url);
+            }
+            return readFileEntry(getFileForUrl(url));
         } else {
             File f = getFileForUrl(url);
+            checkWatch(f);
             return readFileEntry(f);
         }
     }
 
 
+    /**
+     * Registers the file with the resolver's {@link FileWatcher}, if there is one. Done once, on first read.
+     * 
+     * @param f
+     *            the file to watch, or null if it can't be watched.
+     */
+    private void checkWatch(File f) {
+        if (watchChecked) {
+            return;
+        }
+        watchChecked = true;
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        FileWatcher watcher = resolver == null ? null : resolver.getFileWatcher();
+        if (watcher == null) {
+            return;
+        }
+        if (f == null) {
+            watcher.unwatchable();
+        } else {
+            watch = watcher.watch(f);
+        }
+    }
+
+
     /**
      * Returns the URL of the resource.
      * 
@@ -176,16 +213,30 @@ public class DefaultResource extends AbstractResource {
 
     /**
      * Returns the last modified date of the file. If the file was inside a jar-file, the jar file
-     * time stamp is also checked, and potentially extracted again.
+     * time stamp is also checked, and potentially extracted again, in which case -1 is returned
+     * once to have the file read again. A jar entry read directly has the date of the entry.
      */
     @Override
     protected long readLastModified() {
-        assert file != null : "Call to readLastModified() before readEntry()";
+        assert file != null || archive != null : "Call to readLastModified() before readEntry()";
         if (!readLastModifiedAllowed()) {
             return cachedLastModified;
         }
-        if (jarFile != null) {
-            checkJarFile();
+        if (archive != null) {
+            cachedLastModified = readJarLastModified();
+            lastModifiedCheck = System.currentTimeMillis();
+            return cachedLastModified;
+        }
+        if (extracted != null) {
+            int generation = checkJarFile();
+            if (generation != extractedGeneration) {
+                extractedGeneration = generation;
+                // every extraction is to a new directory.
+                file = new File(extracted.getDir(), entryName);
+                // not cached, or reading the file again would see the -1.
+                cachedLastModified = null;
+                return -1l;
+            }
         }
         cachedLastModified = file.lastModified();
         lastModifiedCheck = System.currentTimeMillis();
@@ -195,20 +246,26 @@ public class DefaultResource extends AbstractResource {
 
     /**
      * Tells if we are allowed to check the last modified date. This looks at the check interval to
-     * assert whether checking is allowed.
+     * assert whether checking is allowed. A file watched by a {@link FileWatcher} is only checked
+     * when the watcher saw something happen to it.
      * 
      * @return whether a last modified date is allowed to be checked.
      */
     protected boolean readLastModifiedAllowed() {
+        if (watch != null) {
+            return cachedLastModified == null || (checkModifiedInterval > 0 && watch.checkDirty());
+        }
         return cachedLastModified == null ||
                 (checkModifiedInterval > 0 &&
                         (System.currentTimeMillis() - lastModifiedCheck) > checkModifiedInterval);
     }
 
 
-    private void checkJarFile() {
+    private int checkJarFile() {
         try {
-            extractJarFile(doGetResourceURL(getFullPath()));
+            // a watched jar is only checked after an event, which a check
+            // made just before it must not answer for.
+            return extracted.check(watch != null ? 0 : checkModifiedInterval);
         } catch (IOException e) {
             throw new IllegalArgumentException("Failed to check jar file", e);
         }
@@ -216,7 +273,8 @@ public class DefaultResource extends AbstractResource {
 
 
     private File getFileForUrl(URL url) {
-        if (file != null && file.isFile() && file.canRead()) {
+        // a file extracted from a jar may be of a previous extraction.
+        if (file != null && extracted == null && file.isFile() && file.canRead()) {
             return file;
         }
         file = extractFile(url);
@@ -227,7 +285,58 @@ public class DefaultResource extends AbstractResource {
     }
 
 
+    private Entry readJarEntry(URL url) {
+        if (archive == null) {
+            String[] paths = splitJarUrl(url);
+            archive = JarArchive.get(new File(paths[0]));
+            entryName = paths[1];
+        }
+        try {
+            JarArchive.Content content = archive.read(entryName);
+            if (content == null) {
+                cachedLastModified = null;
+                return new Entry(-1l, EMPTY_BYTES);
+            }
+            long l = archive.getLastModified(content.getEntry());
+            entryCrc = content.getEntry().getCrc();
+            cachedLastModified = l;
+            lastModifiedCheck = System.currentTimeMillis();
+            if (isOffHeapConfigured()) {
+                return new Entry(l, IOUtils.direct(content.getBytes()));
+            }
+            return new Entry(l, content.getBytes());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read jar entry: " + url, e);
+        }
+    }
+
+
+    /**
+     * The date of the jar entry, which is looked up in the jar's index without reading it. An
+     * entry with a changed crc is reported as -1, so that it's read again even if the date is the
+     * same.
+     */
+    private long readJarLastModified() {
+        try {
+            ZipEntry entry = archive.getEntry(entryName);
+            if (entry == null || entry.getCrc() != entryCrc) {
+                return -1l;
+            }
+            return archive.getLastModified(entry);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to check jar file", e);
+        }
+    }
+
+
     private Entry readFileEntry(File file) {
+        if (mapFile(file)) {
+            try {
+                return new Entry(readLastModified(), IOUtils.map(file));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to map file: " + file.getAbsolutePath(), e);
+            }
+        }
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         FileInputStream fis = null;
         try {
@@ -237,6 +346,9 @@ public class DefaultResource extends AbstractResource {
         }
         try {
             IOUtils.spool(fis, baos);
+            if (isOffHeapConfigured()) {
+                return new Entry(readLastModified(), IOUtils.direct(baos.toByteArray()));
+            }
             return new Entry(readLastModified(), baos.toByteArray());
         } catch (IOException e) {
             throw new IllegalStateException("Failed to read file: " + file.getAbsolutePath(), e);
@@ -244,6 +356,30 @@ public class DefaultResource extends AbstractResource {
     }
 
 
+    /**
+     * Files are memory mapped when {@link fnug.config.GlobalConfig#isOffHeap()} is set and modification checks are
+     * off. A file that is changed while mapped, such as truncated in place by an editor, makes reads of the mapping
+     * fail, so otherwise the file is read and copied to a direct buffer. Empty files are read as usual, since there's
+     * nothing to gain.
+     */
+    private boolean mapFile(File file) {
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        return isOffHeapConfigured() && resolver.getGlobalConfig().isNoModify() && file.length() > 0;
+    }
+
+
+    private boolean isOffHeapConfigured() {
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        return resolver != null && resolver.getGlobalConfig().isOffHeap();
+    }
+
+
+    private boolean isExtractJars() {
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        return resolver != null && resolver.getGlobalConfig().isExtractJars();
+    }
+
+
     private File extractFile(URL url) {
 
         String s = url.toExternalForm();
@@ -257,7 +393,7 @@ public class DefaultResource extends AbstractResource {
 
             return new File(s);
 
-        } else if (s.startsWith("jar:file:")) {
+        } else if (s.startsWith(PREFIX_JAR_FILE)) {
             try {
                 return extractJarFile(url);
             } catch (IOException e) {
@@ -289,70 +425,60 @@ public class DefaultResource extends AbstractResource {
     }
 
 
-    protected File extractJarFile(URL url) throws IOException {
+    /**
+     * Splits a <code>jar:file:</code> url in the path of the jar file and the path inside it.
+     * 
+     * @param url
+     *            url to split.
+     * @return the decoded jar file path and the path inside the jar, without leading slash.
+     */
+    private String[] splitJarUrl(URL url) {
 
         String s = url.toExternalForm();
 
-        String jarPath = s.substring(9, s.indexOf("!"));
+        String jarPath = s.substring(PREFIX_JAR_FILE.length(), s.indexOf("!"));
         String filePath = s.substring(s.indexOf("!") + 1);
 
         // decode utf-8 url encoded paths taking '+' into account.
         jarPath = decode(jarPath);
         filePath = decode(filePath);
 
-        if (filePath.startsWith(File.separator)) {
+        if (filePath.startsWith("/")) {
             filePath = filePath.substring(1);
         }
 
-        // we only need one extract dir per jar
-        URL jarURL = new URL("file:" + jarPath);
-        File extractDir = getExtractDir(jarURL);
-
-        File extractFile = new File(extractDir, filePath);
+        return new String[] { jarPath, filePath };
 
-        if (jarFile == null) {
-            jarFile = new File(jarPath);
-            if (!jarFile.canRead()) {
-                throw new IllegalStateException("Unable to read jar file at: " + jarFile.getAbsolutePath());
-            }
-        }
-
-        // 1000 ms tolerance for windoze
-        if (Math.abs(extractDir.lastModified() - jarFile.lastModified()) > 1000) {
+    }
 
-            FileInputStream fis = new FileInputStream(jarFile);
-            ZipInputStream zip = new ZipInputStream(fis);
 
-            if (extractDir.exists()) {
-                IOUtils.rm(extractDir);
-            }
-            extractDir.mkdirs();
+    /**
+     * Returns the file extracted from the jar in the given url. The extraction is shared with all
+     * other resources in the same jar, see {@link ExtractedJar}.
+     * 
+     * @param url
+     *            <code>jar:file:</code> url of the resource.
+     * @return the extracted file.
+     * @throws IOException
+     *             if the jar can't be extracted.
+     */
+    protected File extractJarFile(URL url) throws IOException {
 
-            LOG.info("Extracting '" + jarFile.getAbsolutePath() + "' to: " + extractDir.getAbsolutePath());
+        String[] paths = splitJarUrl(url);
 
-            ZipEntry entry;
-            while ((entry = zip.getNextEntry()) != null) {
-                String name = entry.getName();
-                if (name.startsWith(File.separator)) {
-                    name = name.substring(1);
-                }
-                File f = new File(extractDir, entry.getName());
-                if (entry.isDirectory()) {
-                    f.mkdirs();
-                } else {
-                    f.getParentFile().mkdirs();
-                    FileOutputStream fos = new FileOutputStream(f);
-                    IOUtils.spool(zip, fos);
-                    fos.close();
-                }
-                f.setLastModified(entry.getTime());
+        if (extracted == null) {
+            File jarFile = new File(paths[0]);
+            if (!jarFile.canRead()) {
+                throw new IllegalStateException("Unable to read jar file at: " + jarFile.getAbsolutePath());
             }
-
-            extractDir.setLastModified(jarFile.lastModified());
-
+            // we only need one extract dir per jar
+            extracted = ExtractedJar.get(jarFile, getExtractDir(new URL("file:" + paths[0])));
+            entryName = paths[1];
         }
 
-        return extractFile;
+        extractedGeneration = extracted.check(checkModifiedInterval);
+
+        return new File(extracted.getDir(), paths[1]);
 
     }
 
@@ -368,23 +494,25 @@ public class DefaultResource extends AbstractResource {
 
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} The bytes are scanned with {@link RequiresScanner}, only up to the end of the leading comments if
+     * {@link fnug.config.GlobalConfig#isRequiresHeader()} is set. The tags are kept until the bytes are read again.
      */
     @Override
     public List<String> findRequiresTags() {
-        LinkedList<String> result = new LinkedList<String>();
-        if (isText()) {
-            try {
-                String s = new String(getBytes(), "utf-8");
-                Matcher m = REQUIRES_PAT.matcher(s);
-                while (m.find()) {
-                    result.add(m.group(1));
-                }
-            } catch (UnsupportedEncodingException e) {
-                // not happening.
-            }
+        if (!isText()) {
+            return Collections.emptyList();
         }
-        return result;
+        ensureReadEntry();
+        int readCount = getReadCount();
+        RequiresTags cur = requiresTags;
+        if (cur == null || cur.readCount != readCount) {
+            ResourceResolver resolver = ResourceResolver.getInstance();
+            boolean headerOnly = resolver != null && resolver.getGlobalConfig().isRequiresHeader();
+            List<String> tags = RequiresScanner.scan(getByteBuffer(), headerOnly);
+            cur = new RequiresTags(readCount, Collections.unmodifiableList(tags));
+            requiresTags = cur;
+        }
+        return cur.tags;
     }
 
 
@@ -392,4 +520,20 @@ public class DefaultResource extends AbstractResource {
         return getContentType().startsWith(CONTENT_TYPE_TEXT);
     }
 
+
+    /**
+     * The tags found in one version of the bytes.
+     */
+    private static class RequiresTags {
+
+        private final int readCount;
+        private final List<String> tags;
+
+        RequiresTags(int readCount, List<String> tags) {
+            this.readCount = readCount;
+            this.tags = tags;
+        }
+
+    }
+
 }
@@ -1,10 +1,13 @@
 package fnug.resource;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
+import fnug.config.BundleConfig;
 import fnug.util.IOUtils;
 
 /*
@@ -40,10 +43,12 @@ public class DefaultResourceCollection extends AbstractAggregatedResource
     private volatile String path;
     private Resource[] aggregates;
     private Resource[] dependencies;
-    private JsCompressor jsCompressor;
-    private CssCompressor cssCompressor;
+    private String[] jsCompileArgs;
+    private Compressor jsCompressor;
+    private Compressor cssCompressor;
 
     private byte[] css;
+    private List<byte[]> jsFragments;
     private volatile Resource compressedJs;
     private volatile Resource compressedCss;
 
@@ -66,8 +71,19 @@ public class DefaultResourceCollection extends AbstractAggregatedResource
         this.bundle = bundle;
         this.aggregates = aggregates == null ? EMPTY_RESOURCES : aggregates;
         this.dependencies = dependencies == null ? EMPTY_RESOURCES : dependencies;
-        jsCompressor = new JsCompressor(bundle.getConfig().jsCompileArgs());
-        cssCompressor = new CssCompressor();
+        jsCompileArgs = bundle.getConfig().jsCompileArgs();
+        jsCompressor = new JsCompressor(jsCompileArgs);
+        if (BundleConfig.CSS_COMPRESSOR_FAST.equals(bundle.getConfig().cssCompressor())) {
+            cssCompressor = new FastCssCompressor();
+        } else {
+            cssCompressor = new CssCompressor();
+        }
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        File cacheDir = resolver == null ? null : resolver.getGlobalConfig().getCacheDir();
+        if (cacheDir != null) {
+            jsCompressor = new CachingCompressor(jsCompressor, cacheDir, jsCompileArgs);
+            cssCompressor = new CachingCompressor(cssCompressor, cacheDir);
+        }
     }
 
     private static int hash(Resource[] aggregates) {
@@ -123,21 +139,26 @@ public class DefaultResourceCollection extends AbstractAggregatedResource
 
     /**
      * Builds two sets of aggregated bytes. One which is {@link #getJs()} and the other {@link #getCss()}. Loops over
-     * all {@link #getAggregates()} and picks out {@link Resource#isJs()} and {@link Resource#isCss()}.
+     * all {@link #getAggregates()} and picks out {@link Resource#isJs()} and {@link Resource#isCss()}. The bytes of
+     * each javascript file are also kept, for compiling them one by one, see {@link PerFileJsCompressor}.
      */
     @Override
     protected byte[] buildAggregate() {
         try {
             ByteArrayOutputStream jsbaos = new ByteArrayOutputStream();
             ByteArrayOutputStream cssbaos = new ByteArrayOutputStream();
+            LinkedList<byte[]> fragments = new LinkedList<byte[]>();
             for (Resource r : getAggregates()) {
                 if (r.isJs()) {
-                    jsbaos.write(r.getBytes());
+                    byte[] b = r.getBytes();
+                    jsbaos.write(b);
+                    fragments.add(b);
                 } else if (r.isCss()) {
                     cssbaos.write(r.getBytes());
                 }
             }
             css = cssbaos.toByteArray();
+            jsFragments = fragments;
             return jsbaos.toByteArray();
         } catch (IOException e) {
             throw new IllegalStateException("Failed to build aggregate", e);
@@ -172,7 +193,8 @@ public class DefaultResourceCollection extends AbstractAggregatedResource
                 result = compressedJs;
                 if (result == null) {
                     compressedJs = result = new DefaultCompressedResource(getBundle(), getBasePath(),
-                            getPath() + ".js", getJs(), getLastModified(getExistingJsAggregates()), jsCompressor);
+                            getPath() + ".js", getJs(), getLastModified(getExistingJsAggregates()),
+                            jsCompressor(), compileExecutor());
                 }
             }
         }
@@ -190,7 +212,8 @@ public class DefaultResourceCollection extends AbstractAggregatedResource
                 result = compressedCss;
                 if (compressedCss == null) {
                     compressedCss = result = new DefaultCompressedResource(getBundle(), getBasePath(), getPath()
-                            + ".css", getCss(), getLastModified(getExistingCssAggregates()), cssCompressor);
+                            + ".css", getCss(), getLastModified(getExistingCssAggregates()), cssCompressor,
+                            compileExecutor());
                 }
             }
         }
@@ -213,6 +236,24 @@ public class DefaultResourceCollection extends AbstractAggregatedResource
         return modified;
     }
 
+    private Compressor jsCompressor() {
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        if (resolver != null && resolver.getGlobalConfig().isPerFileCompile()
+                && PerFileJsCompressor.supports(jsCompileArgs)) {
+            ensureReadEntry();
+            return new PerFileJsCompressor(jsCompressor, jsFragments, jsCompileArgs);
+        }
+        return jsCompressor;
+    }
+
+    private Executor compileExecutor() {
+        ResourceResolver resolver = ResourceResolver.getInstance();
+        if (resolver != null && resolver.getGlobalConfig().isAsyncCompile()) {
+            return resolver.getCompileExecutor();
+        }
+        return null;
+    }
+
     private long getLastModified(List<Resource> resources) {
         ensureReadEntry();
         long mostRecent = bundle.getConfig().configResource().getLastModified();
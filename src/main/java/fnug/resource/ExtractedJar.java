@@ -0,0 +1,185 @@
+package fnug.resource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A jar file extracted to a directory. There is one instance per jar file, shared by all resources in it, see
+ * {@link #get(File, File)}. The jar and the directory are compared once per check for all the resources. Every
+ * extraction goes to a new directory with a unique name, and {@link #getDir()} switches to it in one step when it is
+ * complete, so a resource never sees a half extracted jar. The previous directory is kept for resources still reading
+ * from it, older ones are removed. Each extraction increases the {@link #check(long) generation}, which tells the
+ * resources to read their files again.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class ExtractedJar {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractedJar.class);
+
+    private static final ConcurrentHashMap<File, ExtractedJar> EXTRACTED = new ConcurrentHashMap<File, ExtractedJar>();
+
+    private File jarFile;
+    private File dir;
+    private volatile File current;
+    private LinkedList<File> extracted = new LinkedList<File>();
+    private long lastCheck;
+    private int generation;
+
+    private ExtractedJar(File jarFile, File dir) {
+        this.jarFile = jarFile;
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the shared instance for the given jar file.
+     * 
+     * @param jarFile
+     *            the jar file.
+     * @param dir
+     *            the directory to extract in, only used the first time the jar is seen.
+     * @return the instance for the jar file.
+     */
+    public static ExtractedJar get(File jarFile, File dir) {
+        jarFile = jarFile.getAbsoluteFile();
+        ExtractedJar extracted = EXTRACTED.get(jarFile);
+        if (extracted == null) {
+            extracted = new ExtractedJar(jarFile, dir);
+            ExtractedJar prev = EXTRACTED.putIfAbsent(jarFile, extracted);
+            if (prev != null) {
+                extracted = prev;
+            }
+        }
+        return extracted;
+    }
+
+    /**
+     * The jar file.
+     * 
+     * @return the jar file.
+     */
+    public File getJarFile() {
+        return jarFile;
+    }
+
+    /**
+     * The directory the jar is currently extracted to. This changes with every extraction.
+     * 
+     * @return the extract directory, or null if not extracted yet.
+     */
+    public File getDir() {
+        return current;
+    }
+
+    /**
+     * Extracts the jar if the extract directory is missing or doesn't have the date of the jar. The check is only done
+     * if the previous one is older than the given age, which means a check for one resource answers for all the other
+     * resources in the same jar.
+     * 
+     * @param maxAge
+     *            the age in milliseconds of a previous check that is still trusted.
+     * @return the generation of the extract directory, which changes every time the jar is extracted.
+     * @throws IOException
+     *             if the jar can't be extracted.
+     */
+    public synchronized int check(long maxAge) throws IOException {
+        long now = System.currentTimeMillis();
+        if (lastCheck > 0 && (now - lastCheck) <= maxAge) {
+            return generation;
+        }
+        // 1000 ms tolerance for windoze. a missing directory has date 0.
+        File cur = current;
+        if (cur == null || Math.abs(cur.lastModified() - jarFile.lastModified()) > 1000) {
+            extract();
+            generation++;
+        }
+        lastCheck = now;
+        return generation;
+    }
+
+    // must hold monitor
+    private void extract() throws IOException {
+
+        if (!jarFile.canRead()) {
+            throw new IllegalStateException("Unable to read jar file at: " + jarFile.getAbsolutePath());
+        }
+
+        long jarLastModified = jarFile.lastModified();
+
+        // a unique name, since the directory may be shared with other processes.
+        dir.mkdirs();
+        File next = Files.createTempDirectory(dir.toPath(), "jar-").toFile();
+
+        LOG.info("Extracting '" + jarFile.getAbsolutePath() + "' to: " + next.getAbsolutePath());
+
+        try {
+            ZipInputStream zip = new ZipInputStream(new FileInputStream(jarFile));
+            try {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    File f = new File(next, entry.getName());
+                    if (entry.isDirectory()) {
+                        f.mkdirs();
+                    } else {
+                        f.getParentFile().mkdirs();
+                        FileOutputStream fos = new FileOutputStream(f);
+                        try {
+                            IOUtils.spool(zip, fos);
+                        } finally {
+                            fos.close();
+                        }
+                    }
+                    f.setLastModified(entry.getTime());
+                }
+            } finally {
+                zip.close();
+            }
+        } catch (IOException e) {
+            IOUtils.rm(next);
+            throw e;
+        }
+
+        next.setLastModified(jarLastModified);
+
+        current = next;
+        extracted.add(next);
+
+        // the previous directory is kept for resources that already have a file in it.
+        while (extracted.size() > 2) {
+            IOUtils.rm(extracted.removeFirst());
+        }
+
+        dir.setLastModified(jarLastModified);
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package fnug.resource;
+
+import java.io.UnsupportedEncodingException;
+
+import fnug.util.CssMinifier;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Css variant of the compressor using {@link CssMinifier}. Gives the same output as {@link CssCompressor} without
+ * the regular expressions. Used for bundles where {@link fnug.config.BundleConfig#cssCompressor()} is
+ * {@link fnug.config.BundleConfig#CSS_COMPRESSOR_FAST}.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class FastCssCompressor implements Compressor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return "css";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] compress(byte[] input) {
+
+        if (input == null) {
+            return null;
+        }
+
+        try {
+            return CssMinifier.minify(new String(input, "utf-8")).getBytes("utf-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+
+    }
+}
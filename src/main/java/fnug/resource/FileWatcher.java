@@ -0,0 +1,292 @@
+package fnug.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Watches files for modifications using a {@link WatchService} on a background thread, so that resources don't need
+ * to read the last modified date of their file on every check. Resources ask for a {@link Watch} through
+ * {@link #watch(File)} and only read the file's last modified date when it is flagged dirty.
+ * <p>
+ * Every event also increases {@link #getGeneration()}, which lets a caller skip a whole round of checks when nothing
+ * happened since the last one. That shortcut is only safe as long as every resource involved is watched, which is what
+ * {@link #isComplete()} tells. Resources that don't exist can't be watched and must call {@link #unwatchable()}.
+ * Resources in jar files watch the jar file.
+ * <p>
+ * The watcher only keeps weak references to the {@link Watch} instances. A watch is forgotten once the resource holding
+ * it is dropped, such as when a bundle is rebuilt.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class FileWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileWatcher.class);
+
+    private WatchService watchService;
+    private HashMap<WatchKey, Path> dirs = new HashMap<WatchKey, Path>();
+    private HashSet<Path> watchedDirs = new HashSet<Path>();
+    private HashMap<Path, List<WatchRef>> watches = new HashMap<Path, List<WatchRef>>();
+    private ReferenceQueue<Watch> released = new ReferenceQueue<Watch>();
+    private volatile long generation;
+    private volatile boolean complete = true;
+
+    /**
+     * Creates the watch service and starts the background thread. The thread is a daemon thread.
+     * 
+     * @throws IOException
+     *             if the watch service can't be created.
+     */
+    public FileWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, "fnug-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the given file. The returned watch starts out not dirty.
+     * 
+     * @param file
+     *            file to watch.
+     * @return the watch for the file, or null if the file's directory can't be watched, in which case
+     *         {@link #unwatchable()} has been called.
+     */
+    public Watch watch(File file) {
+        Path path = file.getAbsoluteFile().toPath();
+        Path dir = path.getParent();
+        Watch watch = new Watch();
+        synchronized (this) {
+            expunge();
+            if (!watchedDirs.contains(dir)) {
+                try {
+                    dirs.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                    watchedDirs.add(dir);
+                } catch (IOException e) {
+                    LOG.warn("Failed to watch directory: " + dir, e);
+                    unwatchable();
+                    return null;
+                } catch (ClosedWatchServiceException e) {
+                    unwatchable();
+                    return null;
+                }
+            }
+            List<WatchRef> l = watches.get(path);
+            if (l == null) {
+                l = new LinkedList<WatchRef>();
+                watches.put(path, l);
+            }
+            l.add(new WatchRef(watch, path, released));
+        }
+        return watch;
+    }
+
+    /**
+     * Number of watches not yet released.
+     * 
+     * @return the number of watches.
+     */
+    synchronized int getWatchCount() {
+        expunge();
+        int count = 0;
+        for (List<WatchRef> l : watches.values()) {
+            count += l.size();
+        }
+        return count;
+    }
+
+    // must hold monitor
+    private void expunge() {
+        WatchRef ref;
+        while ((ref = (WatchRef) released.poll()) != null) {
+            List<WatchRef> l = watches.get(ref.path);
+            if (l != null) {
+                l.remove(ref);
+                if (l.isEmpty()) {
+                    watches.remove(ref.path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells that a resource can't be watched and needs its modified date checked the normal way.
+     */
+    public void unwatchable() {
+        complete = false;
+    }
+
+    /**
+     * Tells whether all resources asking are watched. See {@link #unwatchable()}.
+     * 
+     * @return true if all resources are watched.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Number increased for every file system event.
+     * 
+     * @return the current generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close watch service", e);
+        }
+    }
+
+    private void poll() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                synchronized (this) {
+                    expunge();
+                    Path dir = dirs.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                            for (List<WatchRef> l : watches.values()) {
+                                markDirty(l);
+                            }
+                        } else {
+                            markDirty(watches.get(dir.resolve((Path) event.context())));
+                        }
+                    }
+                    if (!key.reset()) {
+                        // directory is gone, nothing more will be heard of
+                        // the files in it.
+                        watchedDirs.remove(dirs.remove(key));
+                        for (Path p : watches.keySet()) {
+                            if (p.getParent().equals(dir)) {
+                                stopWatching(watches.get(p));
+                            }
+                        }
+                        unwatchable();
+                    }
+                    generation++;
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop
+        } catch (ClosedWatchServiceException e) {
+            // stop
+        }
+        // anything could change from now on.
+        unwatchable();
+        synchronized (this) {
+            for (List<WatchRef> l : watches.values()) {
+                stopWatching(l);
+            }
+            generation++;
+        }
+    }
+
+    private void stopWatching(List<WatchRef> l) {
+        for (WatchRef ref : l) {
+            Watch w = ref.get();
+            if (w != null) {
+                w.stopped = true;
+            }
+        }
+    }
+
+    private void markDirty(List<WatchRef> l) {
+        if (l != null) {
+            for (WatchRef ref : l) {
+                Watch w = ref.get();
+                if (w != null) {
+                    w.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Weak reference to a watch, remembering the path so it can be removed once released.
+     */
+    private static class WatchRef extends WeakReference<Watch> {
+
+        private final Path path;
+
+        WatchRef(Watch watch, Path path, ReferenceQueue<Watch> queue) {
+            super(watch, queue);
+            this.path = path;
+        }
+
+    }
+
+    /**
+     * Handle for a watched file.
+     */
+    public static class Watch {
+
+        private volatile boolean dirty;
+        private volatile boolean stopped;
+
+        /**
+         * Tells if the file has had any event since last call, and resets the flag. Always true once the watcher can't
+         * tell anymore, such as when it's closed.
+         * 
+         * @return true if the file may be modified.
+         */
+        public boolean checkDirty() {
+            if (stopped) {
+                return true;
+            }
+            if (dirty) {
+                dirty = false;
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package fnug.resource;
+
+import java.nio.ByteBuffer;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Tells that the implementor can provide its bytes as a {@link ByteBuffer}, which may be a memory mapped file or a
+ * direct buffer outside of the heap. Serving from the buffer avoids the copy that
+ * {@link HasLastModifiedBytes#getBytes()} makes of bytes that are not kept on the heap.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public interface HasByteBuffer {
+
+    /**
+     * Returns the bytes as a buffer positioned at the start. Every call returns a new buffer over the same bytes, so
+     * the caller is free to move its position.
+     * 
+     * @return the bytes as a buffer.
+     */
+    ByteBuffer getByteBuffer();
+
+    /**
+     * Returns the gzip content encoded variant of the bytes as a buffer, see {@link HasGzipBytes#getGzipBytes()}.
+     * 
+     * @return the gzipped bytes as a buffer.
+     */
+    ByteBuffer getGzipByteBuffer();
+
+}
@@ -0,0 +1,35 @@
+package fnug.resource;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Tells that the implementor has an entity tag identifying the content of its {@link HasLastModifiedBytes#getBytes()}.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public interface HasETag {
+
+    /**
+     * Returns a strong entity tag, including the surrounding double quotes, that changes if and only if the bytes
+     * change. Returns null if the implementor can't tell an entity tag without building its bytes.
+     * 
+     * @return the entity tag or null.
+     */
+    String getETag();
+
+}
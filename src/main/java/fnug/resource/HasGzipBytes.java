@@ -0,0 +1,35 @@
+package fnug.resource;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Tells that the implementor can provide a gzipped variant of its {@link HasLastModifiedBytes#getBytes()}.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public interface HasGzipBytes {
+
+    /**
+     * Returns the gzip content encoded variant of the bytes. Implementations hold on to the gzipped bytes for as long
+     * as the plain bytes are unchanged, so repeated calls does not compress again.
+     * 
+     * @return the gzipped bytes.
+     */
+    byte[] getGzipBytes();
+
+}
@@ -0,0 +1,280 @@
+package fnug.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A jar file that resources are read from directly, without extracting it. There is one instance per jar file, shared
+ * by all resources in it, see {@link #get(File)}. The jar is kept open and only reopened when its last modified date
+ * or length changes, so reading an entry or checking whether it changed is a lookup in the already read index. A jar
+ * that is reopened is closed once the threads still reading from it are done.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class JarArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JarArchive.class);
+
+    private static final ConcurrentHashMap<File, JarArchive> ARCHIVES = new ConcurrentHashMap<File, JarArchive>();
+
+    private File file;
+
+    // the open jar, swapped under the monitor.
+    private Handle current;
+
+    private JarArchive(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the shared instance for the given jar file.
+     * 
+     * @param file
+     *            the jar file.
+     * @return the instance for the file.
+     */
+    public static JarArchive get(File file) {
+        file = file.getAbsoluteFile();
+        JarArchive archive = ARCHIVES.get(file);
+        if (archive == null) {
+            archive = new JarArchive(file);
+            JarArchive prev = ARCHIVES.putIfAbsent(file, archive);
+            if (prev != null) {
+                archive = prev;
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * The jar file.
+     * 
+     * @return the jar file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Looks up an entry, reopening the jar if its last modified date or length changed since last time. This is the
+     * modification check, and the only call that looks at the jar file on disk once it's open.
+     * 
+     * @param name
+     *            name of the entry, without a leading slash.
+     * @return the entry, or null if there's no such entry or jar file.
+     * @throws IOException
+     *             if the jar can't be read.
+     */
+    public ZipEntry getEntry(String name) throws IOException {
+        Handle h = acquire(true);
+        if (h == null) {
+            return null;
+        }
+        try {
+            return h.zip.getEntry(name);
+        } finally {
+            release(h);
+        }
+    }
+
+    /**
+     * Reads an entry from the jar as it was at the last {@link #getEntry(String)}, without looking at the jar file on
+     * disk unless reading fails. The entry is read outside the monitor, so several threads can read from the same jar
+     * at once.
+     * 
+     * @param name
+     *            name of the entry, without a leading slash.
+     * @return the entry and its bytes, or null if there's no such entry or jar file.
+     * @throws IOException
+     *             if the jar can't be read.
+     */
+    public Content read(String name) throws IOException {
+        Handle h = acquire(false);
+        if (h == null) {
+            return null;
+        }
+        try {
+            return read(h, name);
+        } catch (IOException e) {
+            // a jar overwritten in place since the last check can't be read
+            // through the old index, so check it and try once more.
+            Handle h2 = acquire(true);
+            if (h2 == null || h2 == h) {
+                throw e;
+            }
+            try {
+                return read(h2, name);
+            } finally {
+                release(h2);
+            }
+        } finally {
+            release(h);
+        }
+    }
+
+    private Content read(Handle h, String name) throws IOException {
+        ZipEntry entry = h.zip.getEntry(name);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        long size = entry.getSize();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(size > 0 ? (int) size : 1024);
+        InputStream is = h.zip.getInputStream(entry);
+        try {
+            IOUtils.spool(is, baos);
+        } finally {
+            is.close();
+        }
+        return new Content(entry, baos.toByteArray());
+    }
+
+    /**
+     * Returns the last modified date of an entry. Entries without a date get the date the jar file had when it was
+     * opened.
+     * 
+     * @param entry
+     *            entry to get date for.
+     * @return the last modified date.
+     */
+    public long getLastModified(ZipEntry entry) {
+        long time = entry.getTime();
+        if (time > 0) {
+            return time;
+        }
+        synchronized (this) {
+            return current == null ? file.lastModified() : current.lastModified;
+        }
+    }
+
+    /**
+     * Gets the open jar and counts one more user of it, which must be handed back with {@link #release(Handle)}.
+     * 
+     * @param check
+     *            whether to look at the jar file on disk and reopen it if it changed. The jar is always opened if it
+     *            isn't already.
+     * @return the open jar, or null if there's no jar file.
+     * @throws IOException
+     *             if the jar can't be opened.
+     */
+    private Handle acquire(boolean check) throws IOException {
+        // stat outside the monitor, only the swap needs it.
+        long l = check ? file.lastModified() : 0;
+        long len = check ? file.length() : 0;
+        synchronized (this) {
+            Handle h = current;
+            if (h == null) {
+                h = check ? reopen(l, len) : reopen(file.lastModified(), file.length());
+            } else if (check && (h.lastModified != l || h.length != len)) {
+                h = reopen(l, len);
+            }
+            if (h != null) {
+                h.users++;
+            }
+            return h;
+        }
+    }
+
+    // must hold monitor
+    private Handle reopen(long l, long len) throws IOException {
+        Handle old = current;
+        current = null;
+        if (old != null) {
+            // closed when the last reader is done with it.
+            old.stale = true;
+            if (old.users == 0) {
+                old.close();
+            }
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        LOG.info("Opening jar file: " + file);
+        current = new Handle(new ZipFile(file), l, len);
+        return current;
+    }
+
+    private synchronized void release(Handle h) {
+        h.users--;
+        if (h.stale && h.users == 0) {
+            h.close();
+        }
+    }
+
+    /**
+     * An open jar and the date and length it was opened at. The counters are guarded by the archive's monitor.
+     */
+    private class Handle {
+
+        private final ZipFile zip;
+        private final long lastModified;
+        private final long length;
+        private int users;
+        private boolean stale;
+
+        Handle(ZipFile zip, long lastModified, long length) {
+            this.zip = zip;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        void close() {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close jar file: " + file, e);
+            }
+        }
+
+    }
+
+    /**
+     * An entry read from the jar.
+     */
+    public static class Content {
+
+        private final ZipEntry entry;
+        private final byte[] bytes;
+
+        Content(ZipEntry entry, byte[] bytes) {
+            this.entry = entry;
+            this.bytes = bytes;
+        }
+
+        public ZipEntry getEntry() {
+            return entry;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+package fnug.resource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import googccwrap.CompilationFailedException;
+import googccwrap.GoogleClosureCompilerWrapper;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Reusable closure compiler wrappers for one set of compile arguments. There is one pool per distinct arguments, see
+ * {@link #get(String...)}, shared by all {@link JsCompressor} with those arguments. A wrapper is used by one thread at a
+ * time, and is kept for the next compilation instead of being rebuilt, along with whatever it set up on first use.
+ * <p>
+ * The pool never blocks. When all wrappers are in use a new one is made, and at most {@link #MAX_IDLE} are kept when
+ * they are returned.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class JsCompilerPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JsCompilerPool.class);
+
+    /**
+     * Max number of unused wrappers kept per pool.
+     */
+    public static final int MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+    private static final String WARMUP_JS = "var fnugWarmup = function (a) { return a + 1; }; fnugWarmup(1);";
+
+    private static final ConcurrentHashMap<List<String>, JsCompilerPool> POOLS =
+            new ConcurrentHashMap<List<String>, JsCompilerPool>();
+
+    private String[] args;
+    private ConcurrentLinkedQueue<GoogleClosureCompilerWrapper> idle =
+            new ConcurrentLinkedQueue<GoogleClosureCompilerWrapper>();
+    private AtomicInteger idleCount = new AtomicInteger();
+    private AtomicInteger created = new AtomicInteger();
+
+    private JsCompilerPool(String[] args) {
+        this.args = args;
+    }
+
+    /**
+     * Returns the shared pool for the given compile arguments.
+     * 
+     * @param args
+     *            arguments sent to the wrapped google closure compiler.
+     * @return the pool for the arguments.
+     */
+    public static JsCompilerPool get(String... args) {
+        if (args == null) {
+            args = new String[] {};
+        }
+        List<String> key = Arrays.asList(args.clone());
+        JsCompilerPool pool = POOLS.get(key);
+        if (pool == null) {
+            pool = new JsCompilerPool(args.clone());
+            JsCompilerPool prev = POOLS.putIfAbsent(key, pool);
+            if (prev != null) {
+                pool = prev;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Compiles the given javascript with a wrapper from the pool.
+     * 
+     * @param js
+     *            javascript to compile.
+     * @return the compiled javascript.
+     * @throws CompilationFailedException
+     *             if the javascript doesn't compile.
+     */
+    public String compile(String js) throws CompilationFailedException {
+        GoogleClosureCompilerWrapper wrapper = borrow();
+        boolean reusable = false;
+        try {
+            String result = wrapper.compileString(js);
+            reusable = true;
+            return result;
+        } catch (CompilationFailedException e) {
+            // bad input, the wrapper is fine.
+            reusable = true;
+            throw e;
+        } finally {
+            if (reusable) {
+                release(wrapper);
+            }
+        }
+    }
+
+    /**
+     * Compiles a small piece of javascript, to have a wrapper set up and the compiler's classes loaded before the
+     * first real compilation. Failures are logged.
+     */
+    public void warmup() {
+        long t0 = System.currentTimeMillis();
+        try {
+            compile(WARMUP_JS);
+            LOG.info("Warmed up javascript compiler " + Arrays.asList(args) + " in "
+                    + (System.currentTimeMillis() - t0) + "ms");
+        } catch (CompilationFailedException e) {
+            LOG.warn("Failed to warm up javascript compiler " + Arrays.asList(args), e);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to warm up javascript compiler " + Arrays.asList(args), e);
+        }
+    }
+
+    /**
+     * Number of unused wrappers currently in the pool.
+     * 
+     * @return the number of idle wrappers.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Number of wrappers made by this pool, in use or not.
+     * 
+     * @return the number of wrappers created.
+     */
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    private GoogleClosureCompilerWrapper borrow() {
+        GoogleClosureCompilerWrapper wrapper = idle.poll();
+        if (wrapper != null) {
+            idleCount.decrementAndGet();
+            return wrapper;
+        }
+        created.incrementAndGet();
+        return new GoogleClosureCompilerWrapper(args);
+    }
+
+    private void release(GoogleClosureCompilerWrapper wrapper) {
+        if (idleCount.incrementAndGet() > MAX_IDLE) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(wrapper);
+    }
+
+}
@@ -3,7 +3,6 @@ package fnug.resource;
 import java.io.UnsupportedEncodingException;
 
 import googccwrap.CompilationFailedException;
-import googccwrap.GoogleClosureCompilerWrapper;
 
 /*
  Copyright 2010 Martin Algesten
@@ -22,14 +21,15 @@ import googccwrap.GoogleClosureCompilerWrapper;
  */
 
 /**
- * Implementation of {@link Compressor} for javascript. Uses a wrapped Google Closure Compiler.
+ * Implementation of {@link Compressor} for javascript. Uses a wrapped Google Closure Compiler, taken from the
+ * {@link JsCompilerPool} for the arguments, which makes a new instance cheap.
  * 
  * @author Martin Algesten
  * 
  */
 public class JsCompressor implements Compressor {
 
-    private GoogleClosureCompilerWrapper wrapper;
+    private JsCompilerPool pool;
 
     /**
      * {@inheritDoc}
@@ -46,7 +46,7 @@ public class JsCompressor implements Compressor {
      *            arguments to send.
      */
     public JsCompressor(String... args) {
-        wrapper = new GoogleClosureCompilerWrapper(args);
+        pool = JsCompilerPool.get(args);
     }
 
     /**
@@ -55,7 +55,7 @@ public class JsCompressor implements Compressor {
     @Override
     public byte[] compress(byte[] input) {
         try {
-            String s = wrapper.compileString(new String(input, "utf-8"));
+            String s = pool.compile(new String(input, "utf-8"));
             return s.getBytes("utf-8");
         } catch (UnsupportedEncodingException e) {
             // not happening.
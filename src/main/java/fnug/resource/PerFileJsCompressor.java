@@ -0,0 +1,186 @@
+package fnug.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * {@link Compressor} that compiles the javascript of a resource collection one file at a time, and joins the output.
+ * The output of each file is kept in memory by an md5 sum of the compressor, its arguments and the file's bytes, so
+ * a collection where one file changed only compiles that file again. Used when
+ * {@link fnug.config.GlobalConfig#isPerFileCompile()} is set, for arguments where {@link #supports(String[])}.
+ * <p>
+ * The fragments are the bytes of the files the input was built from. If they don't add up to the input, the input is
+ * compiled as one unit.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class PerFileJsCompressor implements Compressor {
+
+    private final static Logger LOG = LoggerFactory.getLogger(PerFileJsCompressor.class);
+
+    /**
+     * Max number of compiled files kept, beyond this the oldest are dropped.
+     */
+    static final int MAX_FRAGMENTS = 1000;
+
+    private static final ConcurrentHashMap<String, byte[]> FRAGMENTS = new ConcurrentHashMap<String, byte[]>();
+    private static final ConcurrentLinkedQueue<String> FRAGMENTS_ORDER = new ConcurrentLinkedQueue<String>();
+
+    private Compressor compressor;
+    private List<byte[]> fragments;
+    private String keyPrefix;
+
+    /**
+     * Constructs wrapping the given compressor.
+     * 
+     * @param compressor
+     *            the compressor compiling each file.
+     * @param fragments
+     *            the bytes of each file, in the order they make up the input.
+     * @param args
+     *            arguments the wrapped compressor was created with. They are part of the cache key.
+     */
+    public PerFileJsCompressor(Compressor compressor, List<byte[]> fragments, String... args) {
+        this.compressor = compressor;
+        this.fragments = fragments;
+        StringBuilder bld = new StringBuilder();
+        bld.append(compressor.getClass().getName()).append('\n');
+        bld.append(compressor.name()).append('\n');
+        if (args != null) {
+            for (String arg : args) {
+                bld.append(arg).append('\n');
+            }
+        }
+        this.keyPrefix = bld.toString();
+    }
+
+    /**
+     * Tells if files can be compiled separately with the given arguments. Advanced optimizations rename across files,
+     * which needs the whole collection compiled as one unit.
+     * 
+     * @param args
+     *            javascript compile arguments.
+     * @return true unless the arguments ask for advanced optimizations.
+     */
+    public static boolean supports(String[] args) {
+        if (args != null) {
+            for (String arg : args) {
+                if (arg != null && arg.toUpperCase().contains("ADVANCED")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return compressor.name();
+    }
+
+    /**
+     * Compiles each fragment that isn't already compiled and joins the output, each fragment on its own line.
+     */
+    @Override
+    public byte[] compress(byte[] input) {
+
+        if (input == null || !matches(input)) {
+            LOG.debug("Fragments don't match input, compiling as one unit");
+            return compressor.compress(input);
+        }
+
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(input.length);
+            for (byte[] fragment : fragments) {
+                byte[] compiled = compile(fragment);
+                if (compiled.length == 0) {
+                    continue;
+                }
+                baos.write(compiled);
+                if (compiled[compiled.length - 1] != '\n') {
+                    baos.write('\n');
+                }
+            }
+            return baos.toByteArray();
+        } catch (IOException e) {
+            // not happening.
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    private boolean matches(byte[] input) {
+        if (fragments == null) {
+            return false;
+        }
+        int pos = 0;
+        for (byte[] fragment : fragments) {
+            if (pos + fragment.length > input.length) {
+                return false;
+            }
+            for (int i = 0; i < fragment.length; i++) {
+                if (input[pos + i] != fragment[i]) {
+                    return false;
+                }
+            }
+            pos += fragment.length;
+        }
+        return pos == input.length;
+    }
+
+    private byte[] compile(byte[] fragment) {
+        String key = key(fragment);
+        byte[] compiled = FRAGMENTS.get(key);
+        if (compiled == null) {
+            compiled = compressor.compress(fragment);
+            if (FRAGMENTS.putIfAbsent(key, compiled) == null) {
+                FRAGMENTS_ORDER.add(key);
+                evict();
+            }
+        }
+        return compiled;
+    }
+
+    String key(byte[] fragment) {
+        return IOUtils.md5(keyPrefix + IOUtils.md5(fragment));
+    }
+
+    private static void evict() {
+        while (FRAGMENTS.size() > MAX_FRAGMENTS) {
+            String key = FRAGMENTS_ORDER.poll();
+            if (key == null) {
+                break;
+            }
+            FRAGMENTS.remove(key);
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package fnug.resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Compiles the compressed js and css of resource collections on a bounded pool of background threads. Used by
+ * {@link ResourceResolver} to precompile all bundles without holding up startup; a request for a collection that is
+ * not yet compiled simply compiles it (or waits for the worker already compiling it).
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class Precompiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Precompiler.class);
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private ExecutorService executor;
+
+    /**
+     * Constructs with the given number of worker threads. The threads are daemon threads, so an application that
+     * doesn't call {@link #shutdown()} still exits.
+     * 
+     * @param threads
+     *            number of threads, if less than 1 the number of available processors is used.
+     */
+    public Precompiler(int threads) {
+        if (threads < 1) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        final int pool = POOL_NUMBER.incrementAndGet();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "fnug-precompile-" + pool + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Queues compilation of all resource collections of the given bundles. Returns straight away.
+     * 
+     * @param resolver
+     *            the resolver the bundles belong to, bound to the worker threads while compiling.
+     * @param bundles
+     *            bundles to compile.
+     */
+    public void precompile(final ResourceResolver resolver, List<Bundle> bundles) {
+
+        final List<ResourceCollection> colls = new LinkedList<ResourceCollection>();
+        for (Bundle bundle : bundles) {
+            for (ResourceCollection coll : bundle.getResourceCollections()) {
+                colls.add(coll);
+            }
+        }
+
+        final int total = colls.size();
+        final AtomicInteger done = new AtomicInteger();
+        final long started = System.currentTimeMillis();
+
+        LOG.info("Precompiling " + total + " resource collections");
+
+        for (final ResourceCollection coll : colls) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    resolver.setThreadLocal();
+                    long t0 = System.currentTimeMillis();
+                    try {
+                        compress(coll.getCompressedCss());
+                        compress(coll.getCompressedJs());
+                    } catch (RuntimeException e) {
+                        // it will fail again, and be reported, when requested.
+                        LOG.warn("Failed to precompile: " + coll.getPath(), e);
+                    }
+                    int n = done.incrementAndGet();
+                    long now = System.currentTimeMillis();
+                    LOG.info("Precompiled " + coll.getPath() + " in " + (now - t0) + "ms (" + n + "/" + total + ")");
+                    if (n == total) {
+                        LOG.info("Precompiled " + total + " resource collections in " + (now - started) + "ms");
+                    }
+                }
+            });
+        }
+
+    }
+
+    /**
+     * Queues a warm up of the javascript compiler for each distinct {@link fnug.config.BundleConfig#jsCompileArgs()} of
+     * the given bundles, see {@link JsCompilerPool#warmup()}. Returns straight away.
+     * 
+     * @param bundles
+     *            bundles whose compilers to warm up.
+     */
+    public void warmup(List<Bundle> bundles) {
+
+        LinkedHashSet<List<String>> distinct = new LinkedHashSet<List<String>>();
+        for (Bundle bundle : bundles) {
+            String[] args = bundle.getConfig().jsCompileArgs();
+            distinct.add(args == null ? Collections.<String> emptyList() : Arrays.asList(args));
+        }
+
+        for (final List<String> args : distinct) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    JsCompilerPool.get(args.toArray(new String[args.size()])).warmup();
+                }
+            });
+        }
+
+    }
+
+    private void compress(Resource res) {
+        if (res instanceof DefaultCompressedResource) {
+            // getBytes() would return straight away when compiling asynchronously.
+            ((DefaultCompressedResource) res).compress();
+        } else {
+            res.getBytes();
+        }
+    }
+
+    /**
+     * Returns the executor running the worker threads. Also used for asynchronous compilation of single resources.
+     * 
+     * @return the executor.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Stops the worker threads, dropping queued compilations.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
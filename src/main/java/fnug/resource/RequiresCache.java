@@ -0,0 +1,119 @@
+package fnug.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Holds the {@link Resource#findRequiresTags()} of resources and what they resolve to, so that the dependency graph
+ * passes of all bundles share the work of scanning and resolving. Owned by the {@link ResourceResolver}, see
+ * {@link ResourceResolver#getRequiresCache()}.
+ * <p>
+ * Entries are keyed by {@link Resource#getPath()} and only used for the same resource instance with the same
+ * {@link Resource#getLastModified()}, so a modified file is scanned again and a rebuilt bundle's new resources never
+ * see entries for the old.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class RequiresCache {
+
+    private final static Logger LOG = LoggerFactory.getLogger(RequiresCache.class);
+
+    private ConcurrentHashMap<String, Requires> cache = new ConcurrentHashMap<String, Requires>();
+
+    /**
+     * Returns the requires of the given resource, scanning and resolving them if not already known for this version of
+     * the resource.
+     * 
+     * @param resource
+     *            resource to get requires for.
+     * @return the requires of the resource.
+     */
+    public Requires get(Resource resource) {
+        String key = resource.getPath();
+        long lastModified = resource.getLastModified();
+        Requires result = cache.get(key);
+        if (result == null || result.resource != resource || result.lastModified != lastModified) {
+            result = new Requires(resource, lastModified);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Drops everything held, for when the bundles are rebuilt.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * The requires tags of one version of a resource, and the resources they resolve to.
+     */
+    public static class Requires {
+
+        private Resource resource;
+        private long lastModified;
+        private List<String> tags;
+        private List<Resource> resolved;
+
+        private Requires(Resource resource, long lastModified) {
+            this.resource = resource;
+            this.lastModified = lastModified;
+            this.tags = Collections.unmodifiableList(resource.findRequiresTags());
+            List<Resource> l = new ArrayList<Resource>(tags.size());
+            for (String dep : tags) {
+                Resource res = ResourceResolver.getInstance().resolve(dep);
+                if (res == null) {
+                    LOG.warn("No bundle configured to resolve dependency: " + dep);
+                } else if (res instanceof AggregatedResource) {
+                    LOG.warn("Ignoring dependent aggregated resource: " + dep);
+                } else {
+                    l.add(res);
+                }
+            }
+            this.resolved = Collections.unmodifiableList(l);
+        }
+
+        /**
+         * The tags as returned by {@link Resource#findRequiresTags()}.
+         * 
+         * @return the requires tags.
+         */
+        public List<String> getTags() {
+            return tags;
+        }
+
+        /**
+         * The resources the tags resolve to. Tags that don't resolve, or resolve to aggregated resources, are left out.
+         * 
+         * @return the required resources.
+         */
+        public List<Resource> getResolved() {
+            return resolved;
+        }
+
+    }
+
+}
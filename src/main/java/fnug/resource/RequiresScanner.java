@@ -0,0 +1,190 @@
+package fnug.resource;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Finds <code>@requires</code> tags by scanning utf-8 bytes directly, without decoding the whole file to a string.
+ * A tag is a <code>*</code>, optional whitespace, <code>@requires</code>, whitespace and then the tag value up to the
+ * next whitespace, which is the same as the pattern previously used on the decoded file. Since all of those are ascii,
+ * they can't be confused with parts of multibyte utf-8 sequences; only the tag values are decoded.
+ * <p>
+ * In header mode, scanning stops at the first byte that is neither whitespace nor part of a leading
+ * <code>/* *&#47;</code> or <code>//</code> comment, which means large libraries are only read up to their first line
+ * of code.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class RequiresScanner {
+
+    private static final byte[] REQUIRES = new byte[] { '@', 'r', 'e', 'q', 'u', 'i', 'r', 'e', 's' };
+
+    private RequiresScanner() {
+    }
+
+    /**
+     * Scans the given bytes for <code>@requires</code> tags.
+     * 
+     * @param bytes
+     *            utf-8 bytes to scan.
+     * @param headerOnly
+     *            if true, only the leading comments are scanned.
+     * @return the tag values in the order found, never null.
+     */
+    public static List<String> scan(byte[] bytes, boolean headerOnly) {
+        return scan(ByteBuffer.wrap(bytes), headerOnly);
+    }
+
+    /**
+     * Scans the given buffer for <code>@requires</code> tags, from its position to its limit. The buffer's position is
+     * not changed, which means a memory mapped file can be scanned without copying it to the heap.
+     * 
+     * @param buffer
+     *            utf-8 bytes to scan.
+     * @param headerOnly
+     *            if true, only the leading comments are scanned.
+     * @return the tag values in the order found, never null.
+     */
+    public static List<String> scan(ByteBuffer buffer, boolean headerOnly) {
+        ByteBuffer bytes = buffer.slice();
+        return scan(bytes, headerOnly ? headerLength(bytes) : bytes.limit());
+    }
+
+    private static List<String> scan(ByteBuffer bytes, int end) {
+
+        LinkedList<String> result = new LinkedList<String>();
+
+        for (int i = 0; i < end; i++) {
+
+            if (bytes.get(i) != '*') {
+                continue;
+            }
+
+            int pos = skipWhitespace(bytes, i + 1, end);
+            if (!startsWith(bytes, pos, end, REQUIRES)) {
+                continue;
+            }
+            pos += REQUIRES.length;
+
+            int start = skipWhitespace(bytes, pos, end);
+            if (start == pos || start == end) {
+                continue;
+            }
+
+            int stop = start;
+            while (stop < end && !isWhitespace(bytes.get(stop))) {
+                stop++;
+            }
+
+            result.add(decode(bytes, start, stop - start));
+
+            i = stop - 1;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Returns the length of the leading whitespace and comments of the given bytes. An unterminated comment runs to
+     * the end.
+     * 
+     * @param bytes
+     *            bytes to look in.
+     * @return the index of the first byte after the header.
+     */
+    static int headerLength(byte[] bytes) {
+        return headerLength(ByteBuffer.wrap(bytes));
+    }
+
+    private static int headerLength(ByteBuffer bytes) {
+
+        int end = bytes.limit();
+        int pos = 0;
+
+        // utf-8 byte order mark
+        if (end >= 3 && (bytes.get(0) & 0xff) == 0xef && (bytes.get(1) & 0xff) == 0xbb
+                && (bytes.get(2) & 0xff) == 0xbf) {
+            pos = 3;
+        }
+
+        while (true) {
+            pos = skipWhitespace(bytes, pos, end);
+            if (pos + 1 >= end || bytes.get(pos) != '/') {
+                return pos;
+            }
+            if (bytes.get(pos + 1) == '*') {
+                pos += 2;
+                while (pos < end && !(bytes.get(pos) == '*' && pos + 1 < end && bytes.get(pos + 1) == '/')) {
+                    pos++;
+                }
+                pos = Math.min(pos + 2, end);
+            } else if (bytes.get(pos + 1) == '/') {
+                while (pos < end && bytes.get(pos) != '\n' && bytes.get(pos) != '\r') {
+                    pos++;
+                }
+            } else {
+                return pos;
+            }
+        }
+
+    }
+
+    private static int skipWhitespace(ByteBuffer bytes, int pos, int end) {
+        while (pos < end && isWhitespace(bytes.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, int pos, int end, byte[] prefix) {
+        if (end - pos < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(pos + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // same as \s in java.util.regex
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0b || b == '\f' || b == '\r';
+    }
+
+    private static String decode(ByteBuffer bytes, int offset, int length) {
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = bytes.get(offset + i);
+        }
+        try {
+            return new String(value, "utf-8");
+        } catch (UnsupportedEncodingException e) {
+            // not happening.
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -1,10 +1,13 @@
 package fnug.resource;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +46,7 @@ public class ResourceResolver {
     private static final Logger LOG = LoggerFactory.getLogger(ResourceResolver.class);
 
     private static final String SEPARATOR = "/";
+    private static final char SEPARATOR_CHAR = '/';
     private final static HashSet<String> BUNDLE_RESERVED_WORDS = new HashSet<String>(Arrays.asList(new String[] {
             "all",
             "1",
@@ -54,7 +58,14 @@ public class ResourceResolver {
     private ConfigParser configParser = new JsonConfigParser();
     private volatile List<Config> configs = null;
     private volatile LinkedHashMap<String, Bundle> bundles = null;
+    private volatile HashMap<String, Bundle[]> bundleRoutes = null;
     private volatile boolean buildConfigs = true;
+    private Precompiler precompiler;
+    private boolean shutdown;
+    private volatile FileWatcher fileWatcher;
+    private RequiresCache requiresCache = new RequiresCache();
+    private boolean fileWatcherFailed;
+    private volatile long checkedGeneration = -1;
 
     private static ThreadLocal<ResourceResolver> instance = new ThreadLocal<ResourceResolver>();
 
@@ -115,6 +126,7 @@ public class ResourceResolver {
     protected void setConfigs(Config... configs) {
         this.configs = Arrays.asList(configs);
         this.bundles = readBundles(this.configs);
+        this.bundleRoutes = buildBundleRoutes(this.bundles);
         this.buildConfigs = false;
     }
 
@@ -149,9 +161,18 @@ public class ResourceResolver {
         if (path.endsWith(SEPARATOR)) {
             throw new IllegalArgumentException("Path must not end with '" + SEPARATOR + "'");
         }
-        for (Bundle bundle : bundles.values()) {
-            if (path.startsWith(bundle.getName() + "/")) {
-                return bundle.resolve(path);
+        int sep = path.indexOf(SEPARATOR);
+        if (sep <= 0) {
+            return null;
+        }
+        Bundle[] candidates = bundleRoutes.get(path.substring(0, sep));
+        if (candidates != null) {
+            for (Bundle bundle : candidates) {
+                String name = bundle.getName();
+                if (path.length() > name.length() && path.startsWith(name)
+                        && path.charAt(name.length()) == SEPARATOR_CHAR) {
+                    return bundle.resolve(path);
+                }
             }
         }
         return null;
@@ -191,21 +212,31 @@ public class ResourceResolver {
                     }
 
                     LinkedHashMap<String, Bundle> newBundles = readBundles(newConfigs);
+                    HashMap<String, Bundle[]> newBundleRoutes = buildBundleRoutes(newBundles);
 
+                    requiresCache.clear();
                     configs = newConfigs;
                     bundles = newBundles;
+                    bundleRoutes = newBundleRoutes;
                     buildConfigs = false;
 
-                    if (globalConfig.isPrecompile()) {
+                    // no precompiler once shut down.
+                    Precompiler pc = null;
+                    if (globalConfig.isWarmCompile() || globalConfig.isPrecompile()) {
+                        pc = getPrecompiler();
+                    }
+
+                    if (globalConfig.isWarmCompile() && pc != null) {
+
+                        pc.warmup(new LinkedList<Bundle>(bundles.values()));
+
+                    }
+
+                    if (globalConfig.isPrecompile() && pc != null) {
 
                         setThreadLocal();
-                        
-                        for (Bundle bundle : bundles.values()) {
-                            for (ResourceCollection coll : bundle.getResourceCollections()) {
-                                coll.getCompressedCss().getBytes();
-                                coll.getCompressedJs().getBytes();
-                            }
-                        }
+
+                        pc.precompile(this, new LinkedList<Bundle>(bundles.values()));
 
                     }
                     
@@ -236,6 +267,31 @@ public class ResourceResolver {
         return result;
     }
 
+    /**
+     * Groups the bundles on the first path segment of their names, keeping the configured order within each group, so
+     * that {@link #resolve(String)} only needs to look at the bundles that can possibly match.
+     */
+    private HashMap<String, Bundle[]> buildBundleRoutes(LinkedHashMap<String, Bundle> bundles) {
+        LinkedHashMap<String, List<Bundle>> groups = new LinkedHashMap<String, List<Bundle>>();
+        for (Bundle bundle : bundles.values()) {
+            String name = bundle.getName();
+            int sep = name.indexOf(SEPARATOR);
+            String first = sep < 0 ? name : name.substring(0, sep);
+            List<Bundle> l = groups.get(first);
+            if (l == null) {
+                l = new LinkedList<Bundle>();
+                groups.put(first, l);
+            }
+            l.add(bundle);
+        }
+        HashMap<String, Bundle[]> result = new HashMap<String, Bundle[]>();
+        for (String first : groups.keySet()) {
+            List<Bundle> l = groups.get(first);
+            result.put(first, l.toArray(new Bundle[l.size()]));
+        }
+        return result;
+    }
+
     /**
      * Returns a list of all configured bundles.
      * 
@@ -271,7 +327,13 @@ public class ResourceResolver {
         if (globalConfig.isNoModify()) {
             return false;
         }
-        
+
+        FileWatcher watcher = globalConfig.isWatch() ? getFileWatcher() : null;
+        long generation = watcher == null ? -1 : watcher.getGeneration();
+        if (watcher != null && watcher.isComplete() && generation == checkedGeneration) {
+            return false;
+        }
+
         boolean changed = false;
         for (Resource r : configResources) {
             changed = r.checkModified() || changed;
@@ -282,10 +344,81 @@ public class ResourceResolver {
                 buildConfigs = true;
             }
         }
+        checkedGeneration = generation;
         return changed;
 
     }
 
+    /**
+     * Returns the executor used for asynchronous compilation, see {@link GlobalConfig#isAsyncCompile()}. This is the
+     * same thread pool that precompiles bundles.
+     * 
+     * @return the executor compiling in the background, or null if the resolver is shut down, in which case the caller
+     *         compiles in its own thread.
+     */
+    public Executor getCompileExecutor() {
+        Precompiler pc = getPrecompiler();
+        return pc == null ? null : pc.getExecutor();
+    }
+
+    // null once shut down, no new thread pool is started then.
+    private synchronized Precompiler getPrecompiler() {
+        if (precompiler == null && !shutdown) {
+            precompiler = new Precompiler(globalConfig.getPrecompileThreads());
+        }
+        return precompiler;
+    }
+
+    /**
+     * Returns the cache of requires tags shared by the dependency graph passes of all bundles.
+     * 
+     * @return the requires cache.
+     */
+    public RequiresCache getRequiresCache() {
+        return requiresCache;
+    }
+
+    /**
+     * Returns the watcher used to detect file modifications, see {@link GlobalConfig#isWatch()}.
+     * 
+     * @return the file watcher, or null if not watching.
+     */
+    public FileWatcher getFileWatcher() {
+        FileWatcher watcher = fileWatcher;
+        if (watcher != null || !globalConfig.isWatch()) {
+            return watcher;
+        }
+        synchronized (this) {
+            if (fileWatcher == null && !fileWatcherFailed) {
+                try {
+                    fileWatcher = new FileWatcher();
+                } catch (IOException e) {
+                    LOG.warn("Failed to start file watcher, checking modified dates instead", e);
+                    fileWatcherFailed = true;
+                }
+            }
+            return fileWatcher;
+        }
+    }
+
+    /**
+     * Stops any background precompilation and file watching. The resolver is still usable afterwards, but compiles in
+     * the calling thread and checks modified dates without a watcher.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (precompiler != null) {
+            precompiler.shutdown();
+            precompiler = null;
+        }
+        if (fileWatcher != null) {
+            fileWatcher.close();
+            // resources created from now on are not watched.
+            fileWatcherFailed = true;
+            fileWatcher = null;
+        }
+    }
+
     /**
      * Returns the global config object.
      * 
@@ -3,13 +3,12 @@ package fnug.resource;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Map;
 
 import fnug.config.BundleConfig;
 
@@ -42,13 +41,13 @@ import fnug.config.BundleConfig;
  */
 public class Tarjan {
 
-    private final static Logger LOG = LoggerFactory.getLogger(Tarjan.class);
-
     private HashMap<String, Node> resourceNodes = new HashMap<String, Node>();
     private HashMap<String, Node> bundleNodes = new HashMap<String, Node>();
 
     private LinkedHashMap<String, LinkedHashSet<String>> bundleDeps = new LinkedHashMap<String, LinkedHashSet<String>>();
 
+    private LinkedHashMap<Resource, List<String>> requiresTags = new LinkedHashMap<Resource, List<String>>();
+
     private boolean checkModified;
 
     private int index = 0;
@@ -147,34 +146,71 @@ public class Tarjan {
         return result;
     }
 
-    private void tarjan(Node v, ArrayList<ArrayList<Node>> result) {
+    /**
+     * Returns the {@link Resource#findRequiresTags()} read for each resource visited, which are the edges of the graph
+     * the result was calculated from.
+     * 
+     * @return the requires tags of each visited resource.
+     */
+    public Map<Resource, List<String>> getRequiresTags() {
+        return requiresTags;
+    }
+
+    /**
+     * Iterative variant of the classic recursive formulation, so that deep dependency chains don't overflow the call
+     * stack. Each node on the work list keeps its own iterator over its adjacent nodes, which is where the recursion
+     * would have continued.
+     */
+    private void tarjan(Node root, ArrayList<ArrayList<Node>> result) {
+        ArrayList<Node> work = new ArrayList<Node>();
+        visit(root);
+        work.add(root);
+        while (!work.isEmpty()) {
+            Node v = work.get(work.size() - 1);
+            if (v.adjacentIterator.hasNext()) {
+                Node n = v.adjacentIterator.next();
+                if (n.getIndex() == -1) {
+                    visit(n);
+                    work.add(n);
+                } else if (n.onStack) {
+                    v.setLowLink(Math.min(v.getLowLink(), n.getIndex()));
+                }
+                continue;
+            }
+            work.remove(work.size() - 1);
+            v.adjacentIterator = null;
+            if (v.getLowLink() == v.getIndex()) {
+                Node n;
+                ArrayList<Node> component = new ArrayList<Node>();
+                do {
+                    n = stack.remove(stack.size() - 1);
+                    n.onStack = false;
+                    component.add(n);
+                } while (n != v);
+                result.add(component);
+            }
+            if (!work.isEmpty()) {
+                Node parent = work.get(work.size() - 1);
+                parent.setLowLink(Math.min(parent.getLowLink(), v.getLowLink()));
+            }
+        }
+    }
+
+    private void visit(Node v) {
         v.setIndex(index);
         v.setLowLink(index);
         index++;
-        stack.add(0, v);
-        for (Node n : v.getAdjacent()) {
-            if (n.getIndex() == -1) {
-                tarjan(n, result);
-                v.setLowLink(Math.min(v.getLowLink(), n.getLowLink()));
-            } else if (stack.contains(n)) {
-                v.setLowLink(Math.min(v.getLowLink(), n.getIndex()));
-            }
-        }
-        if (v.getLowLink() == v.getIndex()) {
-            Node n;
-            ArrayList<Node> component = new ArrayList<Node>();
-            do {
-                n = stack.remove(0);
-                component.add(n);
-            } while (n != v);
-            result.add(component);
-        }
+        stack.add(v);
+        v.onStack = true;
+        v.adjacentIterator = v.getAdjacent().iterator();
     }
 
     private abstract class Node {
 
         private int index = -1;
         private int lowLink;
+        private boolean onStack;
+        private Iterator<Node> adjacentIterator;
 
         public int getIndex() {
             return index;
@@ -251,25 +287,18 @@ public class Tarjan {
                 if (checkModified) {
                     resource.checkModified();
                 }
-                List<String> deps = resource.findRequiresTags();
-                for (String dep : deps) {
-                    Resource res = ResourceResolver.getInstance().resolve(dep);
-                    if (res == null) {
-                        LOG.warn("No bundle configured to resolve dependency: " + dep);
-                    } else if (res instanceof AggregatedResource) {
-                        LOG.warn("Ignoring dependent aggregated resource: " + dep);
-                    } else {
-                        adjacent.add(getNodeForResource(res));
-
-                        // this is where we add discovered bundle dependencies.
-                        if (resource instanceof HasBundle && res instanceof HasBundle) {
-                            Bundle b1 = ((HasBundle) resource).getBundle();
-                            Bundle b2 = ((HasBundle) res).getBundle();
-                            if (!b1.getName().equals(b2.getName())) {
-                                bundleDeps.get(b1.getName()).add(b2.getName());
-                            }
+                RequiresCache.Requires requires = ResourceResolver.getInstance().getRequiresCache().get(resource);
+                requiresTags.put(resource, requires.getTags());
+                for (Resource res : requires.getResolved()) {
+                    adjacent.add(getNodeForResource(res));
+
+                    // this is where we add discovered bundle dependencies.
+                    if (resource instanceof HasBundle && res instanceof HasBundle) {
+                        Bundle b1 = ((HasBundle) resource).getBundle();
+                        Bundle b2 = ((HasBundle) res).getBundle();
+                        if (!b1.getName().equals(b2.getName())) {
+                            bundleDeps.get(b1.getName()).add(b2.getName());
                         }
-
                     }
                 }
             }
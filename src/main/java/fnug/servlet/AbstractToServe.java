@@ -0,0 +1,115 @@
+package fnug.servlet;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Abstract supertype for {@link ToServe} that are rendered rather than read from a resource. The bytes are rendered on
+ * first access and then held, together with the gzipped bytes and the entity tag, which makes it safe to share an
+ * instance between requests through a {@link ToServeCache}.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public abstract class AbstractToServe implements ToServe {
+
+    private volatile byte[] bytes;
+    private volatile byte[] gzipBytes;
+    private volatile String eTag;
+
+    /**
+     * Renders the bytes. Called at most once per instance.
+     * 
+     * @return the rendered bytes.
+     */
+    protected abstract byte[] buildBytes();
+
+    /**
+     * Tells whether the given instance renders the same bytes as this one, in which case a cached instance can be
+     * served in place of the given.
+     * 
+     * @param other
+     *            the instance to compare with.
+     * @return true if this instance can be served instead of the other.
+     */
+    protected abstract boolean isSameAs(AbstractToServe other);
+
+    /**
+     * Tells whether this instance varies per request (such as a jsonp callback), in which case it must not be cached
+     * and has no entity tag.
+     * 
+     * @return true if the instance is specific to one request.
+     */
+    protected abstract boolean isRequestSpecific();
+
+    /**
+     * Renders the bytes on first call, which means a not modified response never renders anything.
+     */
+    @Override
+    public byte[] getBytes() {
+        byte[] result = bytes;
+        if (result == null) {
+            synchronized (this) {
+                result = bytes;
+                if (result == null) {
+                    bytes = result = buildBytes();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getGzipBytes() {
+        byte[] result = gzipBytes;
+        if (result == null) {
+            synchronized (this) {
+                result = gzipBytes;
+                if (result == null) {
+                    gzipBytes = result = IOUtils.gzip(getBytes());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an md5 sum of the bytes, which renders them if that isn't done already. Returns null for request
+     * specific instances, since they are never reused.
+     */
+    @Override
+    public String getETag() {
+        if (isRequestSpecific()) {
+            return null;
+        }
+        String result = eTag;
+        if (result == null) {
+            synchronized (this) {
+                result = eTag;
+                if (result == null) {
+                    eTag = result = "\"" + IOUtils.md5(getBytes()) + "\"";
+                }
+            }
+        }
+        return result;
+    }
+
+}
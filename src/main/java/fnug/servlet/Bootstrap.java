@@ -2,10 +2,10 @@ package fnug.servlet;
 
 import java.io.UnsupportedEncodingException;
 
-import org.codehaus.jackson.map.ObjectMapper;
-
 import fnug.ResourceServlet;
 import fnug.resource.Bundle;
+import fnug.resource.DefaultCompressedResource;
+import fnug.resource.Resource;
 import fnug.resource.ResourceResolver;
 
 /*
@@ -24,7 +24,7 @@ import fnug.resource.ResourceResolver;
  limitations under the License.
  */
 
-public class Bootstrap implements ToServe {
+public class Bootstrap extends AbstractToServe {
 
     private static final String BOOTSTRAP_ADD = "fnug.loadBundle(\"/***bundles***/\");";
 
@@ -33,84 +33,168 @@ public class Bootstrap implements ToServe {
 
     private static final int LINE_LENGTH = 1000;
 
-    private byte[] bytes;
+    private ToServe bundleJson;
+    private String baseUrl;
+    private Bundle bundle;
+    private Bundle fnug;
+    private boolean add;
     private long lastModified;
-
-    public Bootstrap(ObjectMapper mapper, String baseUrl, Bundle bundle, boolean add) {
+    private volatile DefaultCompressedResource uncompressed;
+
+    /**
+     * Constructs the bootstrap for a bundle.
+     * 
+     * @param bundleJson
+     *            the json of the bundle, which is spliced into the bootstrap.
+     * @param baseUrl
+     *            the base url of the servlet.
+     * @param bundle
+     *            the bundle to bootstrap.
+     * @param add
+     *            whether to make the smaller bootstrap for adding a bundle to an already bootstrapped page.
+     */
+    public Bootstrap(ToServe bundleJson, String baseUrl, Bundle bundle, boolean add) {
 
         if (baseUrl.endsWith("/")) {
             baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
         }
 
-        Bundle fnug = ResourceResolver.getInstance().getBundle("fnug");
+        this.bundleJson = bundleJson;
+        this.baseUrl = baseUrl;
+        this.bundle = bundle;
+        this.add = add;
+
+        fnug = ResourceResolver.getInstance().getBundle("fnug");
 
         // when developing bootstrap, turn on checkModified in /fnug/bundles.js.
         fnug.checkModified();
 
+        this.lastModified = Math.max(bundle.getLastModified(), fnug.getLastModified());
+
+    }
+
+    @Override
+    protected byte[] buildBytes() {
+
         String bootstrapJs;
 
         if (add) {
             bootstrapJs = BOOTSTRAP_ADD;
         } else {
             // no strange utf-8 chars in bootstrap
-            bootstrapJs = new String(fnug.getResourceCollections()[0].getCompressedJs().getBytes());
+            Resource res = fnug.getResourceCollections()[0].getCompressedJs();
+            bootstrapJs = new String(res.getBytes());
+            if (res instanceof DefaultCompressedResource && !((DefaultCompressedResource) res).isCompressed()) {
+                // compiling asynchronously, see isSameAs().
+                uncompressed = (DefaultCompressedResource) res;
+            }
         }
 
-        this.lastModified = Math.max(bundle.getLastModified(), fnug.getLastModified());
-
-        JsonBundle jb = new JsonBundle(bundle);
         String jbs;
 
         try {
-            jbs = mapper.writeValueAsString(jb);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate json", e);
+            jbs = new String(bundleJson.getBytes(), ResourceServlet.UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            // nope
+            throw new RuntimeException(e);
         }
 
-        // Spliced in as string and parsed with JSON.parse().
-        jbs = escape(jbs, LINE_LENGTH);
+        String js = bootstrapJs.replace(TOKEN_BASE_URL, baseUrl);
 
-        String result = bootstrapJs;
+        // Spliced in as string and parsed with JSON.parse(). The json is
+        // escaped straight into the result to avoid copying it around.
+        StringBuilder result = new StringBuilder(js.length() + jbs.length() + jbs.length() / 8 + 64);
 
-        result = result.replace(TOKEN_BASE_URL, baseUrl);
-        result = result.replace(TOKEN_BUNDLES, jbs);
+        int pos = 0;
+        int token;
+        while ((token = js.indexOf(TOKEN_BUNDLES, pos)) >= 0) {
+            result.append(js, pos, token);
+            escape(jbs, LINE_LENGTH, result);
+            pos = token + TOKEN_BUNDLES.length();
+        }
+        result.append(js, pos, js.length());
 
         try {
-            bytes = result.getBytes(ResourceServlet.UTF_8);
+            return result.toString().getBytes(ResourceServlet.UTF_8);
         } catch (UnsupportedEncodingException e) {
             // nope
+            return null;
         }
 
     }
 
     protected static String escape(String s, int length) {
 
-        s = s.replace("\\", "\\\\");
-        s = s.replace("\"", "\\\"");
+        StringBuilder result = new StringBuilder(s.length() + s.length() / 8 + 16);
+        escape(s, length, result);
+        return result.toString();
+
+    }
+
+    /**
+     * Escapes the string into a quoted javascript string literal, split into lines concatenated with + so that no line
+     * is longer than the given length. Lines are never split next to a backslash, to keep escape sequences whole.
+     * Linear in the length of the string.
+     * 
+     * @param s
+     *            string to escape.
+     * @param length
+     *            max length of each line, not counting quotes.
+     * @param out
+     *            where to append the escaped string.
+     */
+    protected static void escape(String s, int length, StringBuilder out) {
+
+        StringBuilder esc = new StringBuilder(s.length() + s.length() / 8 + 16);
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '"') {
+                esc.append('\\');
+            }
+            esc.append(c);
+        }
+
+        out.append('"');
 
-        String result = "";
         int start = 0;
         int end = 0;
 
-        while (end + length < s.length()) {
+        while (end + length < esc.length()) {
             start = end;
             end = start + length;
-            while (s.charAt(end) == '\\' || end > 0 && s.charAt(end-1) == '\\')
+            while (esc.charAt(end) == '\\' || end > 0 && esc.charAt(end - 1) == '\\')
                 end--;
-            result += s.substring(start, end) + "\"+\n\"";
+            out.append(esc, start, end).append("\"+\n\"");
         }
 
-        result += s.substring(end, s.length());
+        out.append(esc, end, esc.length());
 
-        result = "\"" + result + "\"";
+        out.append('"');
 
-        return result;
+    }
 
+    /**
+     * Also tells the bootstrap apart once the compiled bootstrap javascript is ready, if it was built from the
+     * uncompressed bytes served while compiling. The last modified date doesn't change when the compilation is done.
+     */
+    @Override
+    protected boolean isSameAs(AbstractToServe other) {
+        if (!(other instanceof Bootstrap)) {
+            return false;
+        }
+        DefaultCompressedResource res = uncompressed;
+        if (res != null && res.isCompressed()) {
+            return false;
+        }
+        Bootstrap o = (Bootstrap) other;
+        return bundle == o.bundle && fnug == o.fnug && lastModified == o.lastModified && add == o.add
+                && baseUrl.equals(o.baseUrl);
     }
 
     @Override
-    public byte[] getBytes() {
-        return bytes;
+    protected boolean isRequestSpecific() {
+        return false;
     }
 
     @Override
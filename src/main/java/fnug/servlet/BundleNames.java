@@ -25,19 +25,28 @@ import fnug.resource.ResourceResolver;
  limitations under the License.
  */
 
-public class BundleNames implements ToServe {
+public class BundleNames extends AbstractToServe {
 
-    byte[] bytes;
+    ObjectMapper mapper;
+    String jsonp;
     long lastModified;
     boolean isJsonP;
 
     public BundleNames(ObjectMapper mapper, String jsonp) {
 
-        List<Bundle> bundles = ResourceResolver.getInstance().getBundles();
+        this.mapper = mapper;
+        this.jsonp = jsonp;
 
         lastModified = ResourceResolver.getInstance().getLastModified();
         isJsonP = jsonp != null;
 
+    }
+
+    @Override
+    protected byte[] buildBytes() {
+
+        List<Bundle> bundles = ResourceResolver.getInstance().getBundles();
+
         JsonBundleNames jbns = new JsonBundleNames(bundles);
 
         String result = isJsonP ? jsonp + "(" : "";
@@ -53,13 +62,28 @@ public class BundleNames implements ToServe {
         }
 
         try {
-            bytes = result.getBytes("utf-8");
+            return result.getBytes("utf-8");
         } catch (UnsupportedEncodingException e) {
             // as if
+            return null;
         }
 
     }
 
+    @Override
+    protected boolean isSameAs(AbstractToServe other) {
+        if (!(other instanceof BundleNames)) {
+            return false;
+        }
+        BundleNames o = (BundleNames) other;
+        return lastModified == o.lastModified && !o.isJsonP;
+    }
+
+    @Override
+    protected boolean isRequestSpecific() {
+        return isJsonP;
+    }
+
     @Override
     public long getLastModified() {
         return lastModified;
@@ -70,11 +94,6 @@ public class BundleNames implements ToServe {
         return false;
     }
 
-    @Override
-    public byte[] getBytes() {
-        return bytes;
-    }
-
     @Override
     public String getContentType() {
         return isJsonP ? ResourceServlet.CONTENT_TYPE_JS : ResourceServlet.CONTENT_TYPE_JSON;
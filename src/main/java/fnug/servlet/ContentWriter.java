@@ -0,0 +1,130 @@
+package fnug.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fnug.util.IOUtils;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Writes response bodies from buffers. A direct or memory mapped buffer is handed to the container as is when its
+ * output stream has a public <code>sendContent(ByteBuffer)</code> method, as Jetty's does, which lets the container
+ * write it to the socket without copying it into the heap. Anything else goes through the servlet output stream.
+ * <p>
+ * Whether an output stream class has the method is looked up once per class.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class ContentWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContentWriter.class);
+
+    private static final String SEND_CONTENT = "sendContent";
+
+    private static final ConcurrentHashMap<Class<?>, Probe> PROBES = new ConcurrentHashMap<Class<?>, Probe>();
+
+    private ContentWriter() {
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer as the response body. The buffer itself is not moved.
+     * 
+     * @param buf
+     *            the bytes to write.
+     * @param resp
+     *            response to write to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    public static void write(ByteBuffer buf, HttpServletResponse resp) throws IOException {
+        OutputStream os = resp.getOutputStream();
+        if (buf.isDirect()) {
+            Method sendContent = probe(os.getClass());
+            if (sendContent != null && sendContent(sendContent, os, buf.duplicate())) {
+                return;
+            }
+        }
+        IOUtils.write(buf.duplicate(), os);
+    }
+
+    static Method probe(Class<?> cls) {
+        Probe probe = PROBES.get(cls);
+        if (probe == null) {
+            Method m = null;
+            try {
+                m = cls.getMethod(SEND_CONTENT, ByteBuffer.class);
+                LOG.info("Writing direct buffers with " + cls.getName() + "." + SEND_CONTENT + "()");
+            } catch (NoSuchMethodException e) {
+                // stream it is.
+            } catch (SecurityException e) {
+                // stream it is.
+            }
+            probe = new Probe(m);
+            PROBES.put(cls, probe);
+        }
+        return probe.method;
+    }
+
+    /**
+     * @return false if the method couldn't be called, in which case nothing was written.
+     */
+    private static boolean sendContent(Method sendContent, OutputStream os, ByteBuffer buf) throws IOException {
+        try {
+            sendContent.invoke(os, buf);
+            return true;
+        } catch (IllegalAccessException e) {
+            LOG.warn("Failed to call " + sendContent + ", writing to stream", e);
+            PROBES.put(os.getClass(), new Probe(null));
+            return false;
+        } catch (InvocationTargetException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException(t);
+        }
+    }
+
+    /**
+     * Result of looking for the method, which may be none.
+     */
+    private static class Probe {
+
+        private final Method method;
+
+        Probe(Method method) {
+            this.method = method;
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package fnug.servlet;
 
+import fnug.resource.HasETag;
+import fnug.resource.HasGzipBytes;
 import fnug.resource.HasLastModifiedBytes;
 
 /*
@@ -18,7 +20,7 @@ import fnug.resource.HasLastModifiedBytes;
  limitations under the License.
  */
 
-public interface ToServe extends HasLastModifiedBytes {
+public interface ToServe extends HasLastModifiedBytes, HasGzipBytes, HasETag {
 
     String getContentType();
 
@@ -23,17 +23,28 @@ import fnug.resource.Bundle;
  limitations under the License.
  */
 
-public class ToServeBundle implements ToServe {
+public class ToServeBundle extends AbstractToServe {
 
-    byte[] bytes;
+    ObjectMapper mapper;
+    Bundle bundle;
+    String jsonp;
     long lastModified;
     boolean isJsonP;
 
     public ToServeBundle(ObjectMapper mapper, Bundle bundle, String jsonp) {
 
+        this.mapper = mapper;
+        this.bundle = bundle;
+        this.jsonp = jsonp;
+
         lastModified = bundle.getLastModified();
         isJsonP = jsonp != null;
 
+    }
+
+    @Override
+    protected byte[] buildBytes() {
+
         JsonBundle jb = new JsonBundle(bundle);
 
         String result = isJsonP ? jsonp + "(" : "";
@@ -49,16 +60,26 @@ public class ToServeBundle implements ToServe {
         }
 
         try {
-            bytes = result.getBytes("utf-8");
+            return result.getBytes("utf-8");
         } catch (UnsupportedEncodingException e) {
             // ye ye whateva.
+            return null;
         }
 
     }
 
     @Override
-    public byte[] getBytes() {
-        return bytes;
+    protected boolean isSameAs(AbstractToServe other) {
+        if (!(other instanceof ToServeBundle)) {
+            return false;
+        }
+        ToServeBundle o = (ToServeBundle) other;
+        return bundle == o.bundle && lastModified == o.lastModified && !o.isJsonP;
+    }
+
+    @Override
+    protected boolean isRequestSpecific() {
+        return isJsonP;
     }
 
     @Override
@@ -0,0 +1,139 @@
+package fnug.servlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import fnug.resource.Bundle;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Holds rendered bundle json, bundle names and bootstrap javascript between requests. A fresh (cheap, since the bytes
+ * are rendered lazily) instance is made for every request and compared with the held one using
+ * {@link AbstractToServe#isSameAs(AbstractToServe)}, which compares the bundle and last modified date. Only when they
+ * differ is the fresh instance held and rendered.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class ToServeCache {
+
+    /**
+     * Max number of held entries. The base url of bootstrap entries comes from the request, so there is no natural
+     * bound for the number of entries.
+     */
+    private static final int MAX_ENTRIES = 256;
+
+    private static final String KEY_NAMES = "names";
+    private static final String KEY_BUNDLE = "bundle:";
+    private static final String KEY_BOOTSTRAP = "bootstrap:";
+    private static final String KEY_ADD = "add:";
+
+    private ObjectMapper mapper;
+
+    @SuppressWarnings("serial")
+    private LinkedHashMap<String, AbstractToServe> cache = new LinkedHashMap<String, AbstractToServe>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AbstractToServe> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Constructs setting the mapper used to render json.
+     * 
+     * @param mapper
+     *            mapper to render json with.
+     */
+    public ToServeCache(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Returns the names of all configured bundles.
+     * 
+     * @param jsonp
+     *            jsonp callback or null.
+     * @return the bundle names to serve.
+     */
+    public ToServe getBundleNames(String jsonp) {
+        return get(KEY_NAMES, new BundleNames(mapper, jsonp));
+    }
+
+    /**
+     * Returns the json for the given bundle.
+     * 
+     * @param bundle
+     *            bundle to get json for.
+     * @param jsonp
+     *            jsonp callback or null.
+     * @return the bundle json to serve.
+     */
+    public ToServe getBundle(Bundle bundle, String jsonp) {
+        return get(KEY_BUNDLE + bundle.getName(), new ToServeBundle(mapper, bundle, jsonp));
+    }
+
+    /**
+     * Returns the bootstrap javascript for the given bundle and base url.
+     * 
+     * @param baseUrl
+     *            base url spliced into the bootstrap.
+     * @param bundle
+     *            bundle to bootstrap.
+     * @param add
+     *            whether this is the bootstrap for adding a bundle to an already bootstrapped page.
+     * @return the bootstrap to serve.
+     */
+    public ToServe getBootstrap(String baseUrl, Bundle bundle, boolean add) {
+        String key = KEY_BOOTSTRAP + bundle.getName() + ":" + (add ? KEY_ADD : "") + baseUrl;
+        return get(key, new Bootstrap(getBundle(bundle, null), baseUrl, bundle, add));
+    }
+
+    /**
+     * Drops everything held for the given bundle. Called when {@link Bundle#checkModified()} finds the bundle
+     * changed.
+     * 
+     * @param bundle
+     *            the changed bundle.
+     */
+    public synchronized void drop(Bundle bundle) {
+        String bundleKey = KEY_BUNDLE + bundle.getName();
+        String bootstrapKey = KEY_BOOTSTRAP + bundle.getName() + ":";
+        for (Iterator<String> iter = cache.keySet().iterator(); iter.hasNext();) {
+            String key = iter.next();
+            if (key.equals(bundleKey) || key.startsWith(bootstrapKey)) {
+                iter.remove();
+            }
+        }
+    }
+
+    private synchronized ToServe get(String key, AbstractToServe fresh) {
+        if (fresh.isRequestSpecific()) {
+            return fresh;
+        }
+        AbstractToServe held = cache.get(key);
+        if (held != null && held.isSameAs(fresh)) {
+            return held;
+        }
+        cache.put(key, fresh);
+        return fresh;
+    }
+
+}
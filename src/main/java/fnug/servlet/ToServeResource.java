@@ -1,10 +1,15 @@
 package fnug.servlet;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 import fnug.ResourceServlet;
 import fnug.resource.DefaultCompressedResource;
+import fnug.resource.HasByteBuffer;
+import fnug.resource.HasETag;
+import fnug.resource.HasGzipBytes;
 import fnug.resource.Resource;
+import fnug.util.IOUtils;
 
 /*
  Copyright 2010 Martin Algesten
@@ -22,56 +27,132 @@ import fnug.resource.Resource;
  limitations under the License.
  */
 
-public class ToServeResource implements ToServe {
+public class ToServeResource implements ToServe, HasByteBuffer {
 
     private static final String MIME_TEXT = "text/";
     private Resource res;
+    private String jsonp;
     private boolean isJsonP;
     private byte[] bytes;
 
     public ToServeResource(Resource res, String jsonp) {
         this.res = res;
+        this.jsonp = jsonp;
         isJsonP = jsonp != null && isText(res.getContentType());
+    }
 
-        if (isJsonP) {
-            String result = jsonp + "('";
-            result += escapeJsonP(res.getBytes());
-            result += "');";
-            try {
-                bytes = result.getBytes("utf-8");
-            } catch (UnsupportedEncodingException e) {
-                // dum de dum
+    /**
+     * Wraps the bytes in the callback, escaping quotes and line breaks. Done on the utf-8 bytes, since the escaped
+     * characters are all ascii, which means the result is allocated once and nothing is decoded.
+     */
+    private byte[] buildJsonP() {
+        ByteBuffer src = res instanceof HasByteBuffer ? ((HasByteBuffer) res).getByteBuffer() : ByteBuffer.wrap(res
+                .getBytes());
+        byte[] start = utf8(jsonp + "('");
+        byte[] end = utf8("');");
+
+        int from = src.position();
+        int to = src.limit();
+        int escapes = 0;
+        for (int i = from; i < to; i++) {
+            byte b = src.get(i);
+            if (b == '\'' || b == '\r' || b == '\n') {
+                escapes++;
             }
-        } else {
-            bytes = res.getBytes();
         }
 
+        byte[] result = new byte[start.length + (to - from) + escapes + end.length];
+        System.arraycopy(start, 0, result, 0, start.length);
+        int pos = start.length;
+        for (int i = from; i < to; i++) {
+            byte b = src.get(i);
+            if (b == '\'') {
+                result[pos++] = '\\';
+                result[pos++] = '\'';
+            } else if (b == '\r') {
+                result[pos++] = '\\';
+                result[pos++] = 'r';
+            } else if (b == '\n') {
+                result[pos++] = '\\';
+                result[pos++] = 'n';
+            } else {
+                result[pos++] = b;
+            }
+        }
+        System.arraycopy(end, 0, result, pos, end.length);
+        return result;
+    }
+
+    private byte[] utf8(String s) {
+        try {
+            return s.getBytes("utf-8");
+        } catch (UnsupportedEncodingException e) {
+            // dum de dum
+            throw new RuntimeException(e);
+        }
     }
 
     private boolean isText(String contentType) {
         return contentType != null && contentType.startsWith(MIME_TEXT);
     }
 
-    private String escapeJsonP(byte[] bytes) {
-
-        String s = null;
+    /**
+     * Returns the resource bytes, or on first call for jsonp, wraps them in the callback.
+     */
+    @Override
+    public byte[] getBytes() {
+        if (!isJsonP) {
+            return res.getBytes();
+        }
+        if (bytes == null) {
+            bytes = buildJsonP();
+        }
+        return bytes;
+    }
 
-        try {
-            s = new String(bytes, "utf-8");
-        } catch (UnsupportedEncodingException e) {
-            // so tiring...
+    /**
+     * Reuses the gzipped bytes held by the resource, unless this is a jsonp response, which is compressed for every
+     * instance since the callback differs between requests.
+     */
+    @Override
+    public byte[] getGzipBytes() {
+        if (!isJsonP && res instanceof HasGzipBytes) {
+            return ((HasGzipBytes) res).getGzipBytes();
         }
+        return IOUtils.gzip(getBytes());
+    }
 
-        s = s.replace("'", "\\'");
-        s = s.replaceAll("\r", "\\\\r");
-        s = s.replaceAll("\n", "\\\\n");
+    /**
+     * Serves from the buffer of the resource, which may be off heap, unless this is a jsonp response.
+     */
+    @Override
+    public ByteBuffer getByteBuffer() {
+        if (!isJsonP && res instanceof HasByteBuffer) {
+            return ((HasByteBuffer) res).getByteBuffer();
+        }
+        return ByteBuffer.wrap(getBytes());
+    }
 
-        return s;
+    /**
+     * Serves from the gzipped buffer of the resource, which may be off heap, unless this is a jsonp response.
+     */
+    @Override
+    public ByteBuffer getGzipByteBuffer() {
+        if (!isJsonP && res instanceof HasByteBuffer) {
+            return ((HasByteBuffer) res).getGzipByteBuffer();
+        }
+        return ByteBuffer.wrap(getGzipBytes());
     }
 
+    /**
+     * Reuses the entity tag of the resource. There is no tag for jsonp responses, since those vary with the callback.
+     */
     @Override
-    public byte[] getBytes() {
-        return bytes;
+    public String getETag() {
+        if (!isJsonP && res instanceof HasETag) {
+            return ((HasETag) res).getETag();
+        }
+        return null;
     }
 
     @Override
@@ -79,9 +160,13 @@ public class ToServeResource implements ToServe {
         return res.getLastModified();
     }
 
+    /**
+     * Compressed resources have content addressed paths and can be cached forever, but not while they are still served
+     * uncompressed waiting for an asynchronous compilation.
+     */
     @Override
     public boolean futureExpires() {
-        return res instanceof DefaultCompressedResource;
+        return res instanceof DefaultCompressedResource && ((DefaultCompressedResource) res).isCompressed();
     }
 
     @Override
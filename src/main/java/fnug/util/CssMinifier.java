@@ -0,0 +1,889 @@
+package fnug.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+/*
+ Copyright 2010 Martin Algesten
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Minifies css the same way as {@link YUICssCompressor} with a line break after every rule, without regular
+ * expressions. A tokenizer removes comments, sets strings and preserved comments aside and collapses whitespace in
+ * one pass. The remaining rewrites are done in a few passes over the result, in the same order as in
+ * {@link YUICssCompressor}, where rewrites that can't affect each other share a pass.
+ * <p>
+ * The output is the same as from {@link YUICssCompressor}. Stylesheets with unterminated comments, or a comment
+ * directly followed by <code>*</code>, are left to {@link YUICssCompressor}, since its output for those depends on
+ * its internal placeholders.
+ * 
+ * @author Martin Algesten
+ * 
+ */
+public class CssMinifier {
+
+    // marks strings and preserved comments set aside, followed by index and another marker.
+    private static final char MARKER = '\u0000';
+
+    private static final String NO_SPACE_BEFORE = "!{};:>+()],";
+    private static final String NO_SPACE_AFTER = "!{}:;>+([,";
+
+    private static final String[] UNITS = new String[] { "px", "em", "%", "in", "cm", "mm", "pc", "pt", "ex" };
+
+    private static final String[] ZERO_ZERO = new String[] { "background-position", "transform-origin",
+            "webkit-transform-origin", "moz-transform-origin", "o-transform-origin", "ms-transform-origin" };
+
+    private static final String[] NONE_ZERO = new String[] { "border", "border-top", "border-right",
+            "border-bottom", "outline", "background" };
+
+    // the dots match any character but line breaks, as in the regular expression.
+    private static final String ALPHA_OPACITY = "progid:DXImageTransform.Microsoft.Alpha(Opacity=";
+    private static final String ALPHA_OPACITY_SHORT = "alpha(opacity=";
+
+    private static final String CHARSET = "@charset ";
+
+    private CssMinifier() {
+    }
+
+    /**
+     * Minifies the given css.
+     * 
+     * @param css
+     *            css to minify.
+     * @return the minified css.
+     */
+    public static String minify(String css) {
+
+        if (css.indexOf(MARKER) >= 0) {
+            // would be mistaken for our own markers.
+            return yui(css);
+        }
+        if (!wellFormedComments(css)) {
+            // odd output from yui we don't mimic.
+            return yui(css);
+        }
+
+        ArrayList<String> preserved = new ArrayList<String>();
+
+        StringBuilder b = tokenize(css, preserved);
+        b = spacesBefore(b);
+        if (b.indexOf(CHARSET) >= 0) {
+            b = charset(b);
+        }
+        b = spacesAfter(b);
+        b = semicolonsAndUnits(b);
+        b = zeros(b);
+        b = rgb(b);
+        b = hexColors(b);
+        b = noneAndAlpha(b);
+        b = emptyRules(b);
+        b = lineBreaksAndRestore(b, preserved);
+
+        return b.toString().trim();
+
+    }
+
+    /**
+     * Tells if all comments are terminated, and none is directly followed by <code>*</code>, which
+     * {@link YUICssCompressor} reads as the start of another comment.
+     */
+    private static boolean wellFormedComments(String css) {
+        if (css.indexOf("*/*") >= 0) {
+            return false;
+        }
+        int i = 0;
+        while ((i = css.indexOf("/*", i)) >= 0) {
+            int end = css.indexOf("*/", i + 2);
+            if (end < 0) {
+                return false;
+            }
+            i = end + 2;
+        }
+        return true;
+    }
+
+    /**
+     * Removes comments, replaces strings and preserved comments with markers and collapses whitespace to single
+     * spaces.
+     */
+    private static StringBuilder tokenize(String css, ArrayList<String> preserved) {
+
+        int n = css.length();
+        StringBuilder b = new StringBuilder(n);
+
+        boolean space = false;
+        // the comment after a /* \*/ hack is kept empty.
+        boolean emptyNextComment = false;
+
+        int i = 0;
+        while (i < n) {
+
+            char c = css.charAt(i);
+
+            if (c == '/' && i + 1 < n && css.charAt(i + 1) == '*') {
+
+                int end = css.indexOf("*/", i + 2);
+                String token = css.substring(i + 2, end < 0 ? n : end);
+                i = end < 0 ? n : end + 2;
+
+                String keep = null;
+                if (emptyNextComment) {
+                    keep = "";
+                    emptyNextComment = false;
+                } else if (token.startsWith("!")) {
+                    keep = token;
+                } else if (token.endsWith("\\")) {
+                    keep = "\\";
+                    emptyNextComment = true;
+                } else if (token.length() == 0 && !space && b.length() > 0 && b.charAt(b.length() - 1) == '>') {
+                    // IE7 hack, html >/**/ body
+                    keep = "";
+                }
+
+                if (keep != null) {
+                    if (space) {
+                        b.append(' ');
+                        space = false;
+                    }
+                    b.append("/*");
+                    mark(b, preserved, keep);
+                    b.append("*/");
+                }
+
+            } else if (c == '"' || c == '\'') {
+
+                int end = stringEnd(css, i);
+                if (end < 0) {
+                    // not a string, just a quote.
+                    if (space) {
+                        b.append(' ');
+                        space = false;
+                    }
+                    b.append(c);
+                    i++;
+                    continue;
+                }
+
+                // comments in strings are kept, but count for the hack.
+                for (int k = css.indexOf("/*", i + 1); k >= 0 && k < end; k = css.indexOf("/*", k)) {
+                    int close = css.indexOf("*/", k + 2);
+                    emptyNextComment = !emptyNextComment && css.charAt(close - 1) == '\\'
+                            && css.charAt(k + 2) != '!' && close > k + 2;
+                    k = close + 2;
+                }
+
+                if (space) {
+                    b.append(' ');
+                    space = false;
+                }
+                b.append(c);
+                mark(b, preserved, replaceAlphaOpacity(css.substring(i + 1, end)));
+                b.append(c);
+                i = end + 1;
+
+            } else if (isWhitespace(c)) {
+
+                space = true;
+                i++;
+
+            } else {
+
+                if (space) {
+                    b.append(' ');
+                    space = false;
+                }
+                b.append(c);
+                i++;
+
+            }
+
+        }
+
+        if (space) {
+            b.append(' ');
+        }
+
+        return b;
+
+    }
+
+    /**
+     * Finds the closing quote of the string starting at the given index. A backslash escapes the next character, and
+     * comments inside strings are skipped, since {@link YUICssCompressor} hides them before looking for strings. If
+     * there's no closing quote, the last escaped quote closes the string.
+     * 
+     * @return index of the closing quote, or -1 if this isn't a string.
+     */
+    private static int stringEnd(String css, int start) {
+        char quote = css.charAt(start);
+        int n = css.length();
+        int lastEscapedQuote = -1;
+        int i = start + 1;
+        while (i < n) {
+            char c = css.charAt(i);
+            if (c == quote) {
+                return i;
+            } else if (c == '\\') {
+                if (i + 1 < n && css.charAt(i + 1) == quote) {
+                    lastEscapedQuote = i + 1;
+                }
+                if (i + 2 < n && css.charAt(i + 1) == '/' && css.charAt(i + 2) == '*') {
+                    // escaped start of a comment, the comment is still skipped.
+                    i = css.indexOf("*/", i + 3) + 2;
+                } else {
+                    i += 2;
+                }
+            } else if (c == '/' && i + 1 < n && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else {
+                i++;
+            }
+        }
+        return lastEscapedQuote;
+    }
+
+    private static void mark(StringBuilder b, ArrayList<String> preserved, String token) {
+        b.append(MARKER).append(preserved.size()).append(MARKER);
+        preserved.add(token);
+    }
+
+    /**
+     * Removes spaces before <code>!{};:&gt;+()],</code>, except before the colons of pseudo classes in selectors. Also
+     * puts a space back after <code>:first-line</code> and <code>:first-letter</code> and removes spaces after
+     * comments.
+     */
+    private static StringBuilder spacesBefore(StringBuilder b) {
+
+        int n = b.length();
+        boolean[] pseudo = pseudoClassColons(b);
+        StringBuilder out = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == ' ') {
+                if (i + 1 < n) {
+                    char next = b.charAt(i + 1);
+                    if (NO_SPACE_BEFORE.indexOf(next) >= 0 && !(next == ':' && pseudo[i + 1])) {
+                        continue;
+                    }
+                }
+                if (endsWith(out, "*/")) {
+                    continue;
+                }
+            } else if ((c == '{' || c == ',') && (endsWith(out, ":first-line") || endsWith(out, ":first-letter"))) {
+                out.append(' ');
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Marks the colons in selectors. Those are the colons from the start or a <code>}</code> up to the next
+     * <code>{</code>, for the first <code>}</code> with at least one other character before the colon.
+     */
+    private static boolean[] pseudoClassColons(StringBuilder b) {
+
+        int n = b.length();
+        boolean[] pseudo = new boolean[n];
+
+        int[] nextColon = new int[n + 1];
+        nextColon[n] = n;
+        for (int i = n - 1; i >= 0; i--) {
+            nextColon[i] = b.charAt(i) == ':' ? i : nextColon[i + 1];
+        }
+
+        int segment = 0;
+        for (int q = 0; q < n; q++) {
+            if (b.charAt(q) != '{') {
+                continue;
+            }
+            // candidates are the start of the string and every }, each followed by the selector.
+            for (int p = segment; p < q; p++) {
+                int from;
+                if (p == 0 && segment == 0) {
+                    from = 0;
+                } else if (b.charAt(p) == '}') {
+                    from = p + 1;
+                } else {
+                    continue;
+                }
+                int colon = nextColon[from];
+                if (colon >= q) {
+                    break;
+                }
+                if (colon > from) {
+                    for (int k = colon; k < q; k = nextColon[k + 1]) {
+                        pseudo[k] = true;
+                    }
+                    break;
+                }
+            }
+            segment = q + 1;
+        }
+
+        return pseudo;
+
+    }
+
+    /**
+     * Moves the last <code>@charset</code> to the start, and keeps only one of several at the start.
+     */
+    private static StringBuilder charset(StringBuilder b) {
+
+        // ^(.*)(@charset "[^"]*";) -> $2$1, where the dot doesn't match line breaks.
+        int limit = b.length();
+        for (int i = 0; i < b.length(); i++) {
+            if (isLineTerminator(b.charAt(i))) {
+                limit = i;
+                break;
+            }
+        }
+        int from = b.lastIndexOf(CHARSET + "\"", limit);
+        for (int i = from; i >= 0; i = i == 0 ? -1 : b.lastIndexOf(CHARSET + "\"", i - 1)) {
+            int quote = b.indexOf("\"", i + CHARSET.length() + 1);
+            if (quote >= 0 && quote + 1 < b.length() && b.charAt(quote + 1) == ';') {
+                int end = quote + 2;
+                StringBuilder moved = new StringBuilder(b.length());
+                moved.append(b, i, end).append(b, 0, i).append(b, end, b.length());
+                b = moved;
+                break;
+            }
+        }
+
+        // ^(\s*@charset [^;]+;\s*)+ -> $1
+        int pos = 0;
+        int lastStart = -1;
+        int lastEnd = -1;
+        while (true) {
+            int p = pos;
+            while (p < b.length() && isWhitespace(b.charAt(p))) {
+                p++;
+            }
+            if (!startsWith(b, p, CHARSET)) {
+                break;
+            }
+            int semi = b.indexOf(";", p + CHARSET.length());
+            if (semi < 0 || semi == p + CHARSET.length()) {
+                break;
+            }
+            p = semi + 1;
+            while (p < b.length() && isWhitespace(b.charAt(p))) {
+                p++;
+            }
+            lastStart = pos;
+            lastEnd = p;
+            pos = p;
+        }
+        if (lastStart > 0) {
+            StringBuilder kept = new StringBuilder(b.length());
+            kept.append(b, lastStart, lastEnd).append(b, lastEnd, b.length());
+            b = kept;
+        }
+
+        return b;
+
+    }
+
+    /**
+     * Puts a space back in <code>and (</code>, and removes spaces after <code>!{}:;&gt;+([,</code>.
+     */
+    private static StringBuilder spacesAfter(StringBuilder b) {
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == ' ') {
+                int len = out.length();
+                if (len > 0 && NO_SPACE_AFTER.indexOf(out.charAt(len - 1)) >= 0) {
+                    continue;
+                }
+            } else if (c == '(' && endsWith(out, "and")) {
+                int len = out.length();
+                if (len == 3 || !isWordChar(out.charAt(len - 4))) {
+                    out.append(' ');
+                }
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Removes semicolons before <code>}</code>, and units after zeros.
+     */
+    private static StringBuilder semicolonsAndUnits(StringBuilder b) {
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == '}') {
+                int len = out.length();
+                while (len > 0 && out.charAt(len - 1) == ';') {
+                    len--;
+                }
+                out.setLength(len);
+            } else if ((c == ' ' || c == ':') && i + 1 < n && b.charAt(i + 1) == '0') {
+                String unit = unitAt(b, i + 2);
+                if (unit != null) {
+                    out.append(c).append('0');
+                    i += 1 + unit.length();
+                    continue;
+                }
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    private static String unitAt(StringBuilder b, int pos) {
+        for (String unit : UNITS) {
+            if (startsWith(b, pos, unit)) {
+                return unit;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shortens <code>:0 0 0 0;</code> to <code>:0;</code>, then makes that <code>0 0</code> again for
+     * <code>background-position</code> and the like, and removes leading zeros before decimals.
+     */
+    private static StringBuilder zeros(StringBuilder b) {
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == ':' && i + 1 < n && b.charAt(i + 1) == '0') {
+
+                // :0 0 0 0(;|}), :0 0 0(;|}) and :0 0(;|})
+                int end = -1;
+                for (int zeros = 4; zeros >= 2 && end < 0; zeros--) {
+                    int p = i + 2;
+                    int z = 1;
+                    while (z < zeros && p + 1 < n && b.charAt(p) == ' ' && b.charAt(p + 1) == '0') {
+                        p += 2;
+                        z++;
+                    }
+                    if (z == zeros && p < n && isTerminator(b.charAt(p))) {
+                        end = p;
+                    }
+                }
+                if (end < 0 && i + 2 < n && isTerminator(b.charAt(i + 2))) {
+                    end = i + 2;
+                }
+
+                if (end >= 0) {
+                    String name = longestSuffix(out, ZERO_ZERO);
+                    if (name != null) {
+                        String found = out.substring(out.length() - name.length());
+                        out.setLength(out.length() - name.length());
+                        out.append(found.toLowerCase()).append(":0 0");
+                    } else {
+                        out.append(":0");
+                    }
+                    out.append(b.charAt(end));
+                    i = end;
+                    continue;
+                }
+
+            }
+            if ((c == ':' || c == ' ') && i + 1 < n && b.charAt(i + 1) == '0') {
+                // (:|\s)0+\.(\d+)
+                int p = i + 1;
+                while (p < n && b.charAt(p) == '0') {
+                    p++;
+                }
+                if (p + 1 < n && b.charAt(p) == '.' && isDigit(b.charAt(p + 1))) {
+                    out.append(c).append('.');
+                    i = p;
+                    continue;
+                }
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Turns <code>rgb(51,102,153)</code> into <code>#336699</code>.
+     */
+    private static StringBuilder rgb(StringBuilder b) {
+
+        if (b.indexOf("rgb") < 0) {
+            return b;
+        }
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == 'r' && startsWith(b, i, "rgb")) {
+                // rgb\s*\(\s*([0-9,\s]+)\s*\)
+                int p = i + 3;
+                while (p < n && isWhitespace(b.charAt(p))) {
+                    p++;
+                }
+                if (p < n && b.charAt(p) == '(') {
+                    int start = p + 1;
+                    int end = start;
+                    while (end < n && (isDigit(b.charAt(end)) || b.charAt(end) == ',' || isWhitespace(b.charAt(end)))) {
+                        end++;
+                    }
+                    if (end > start && end < n && b.charAt(end) == ')') {
+                        int from = start;
+                        while (from < end - 1 && isWhitespace(b.charAt(from))) {
+                            from++;
+                        }
+                        String[] rgbcolors = b.substring(from, end).split(",");
+                        out.append('#');
+                        for (String rgbcolor : rgbcolors) {
+                            int val = Integer.parseInt(rgbcolor);
+                            if (val < 16) {
+                                out.append('0');
+                            }
+                            out.append(Integer.toHexString(val));
+                        }
+                        i = end;
+                        continue;
+                    }
+                }
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Shortens <code>#AABBCC</code> to <code>#abc</code> and lowercases other colors, except directly after
+     * <code>}</code> where it's likely an id selector, and after quotes or <code>=</code> as in
+     * <code>chroma(color="#FFFFFF")</code>.
+     */
+    private static StringBuilder hexColors(StringBuilder b) {
+
+        if (b.indexOf("#") < 0) {
+            return b;
+        }
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+        // a color can't take the character before it from the previous color.
+        int floor = 0;
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == '#' && isHex(b, i + 1, 6)) {
+                // ([^"'=\s])(\s*)#([0-9a-fA-F]){6}
+                int g1 = i - 1;
+                while (g1 >= floor && isWhitespace(b.charAt(g1))) {
+                    g1--;
+                }
+                if (g1 >= floor && isColorPrefix(b.charAt(g1))) {
+                    char prefix = b.charAt(g1);
+                    String match = b.substring(g1, i + 7);
+                    out.setLength(out.length() - (i - g1));
+                    if (prefix == '\\') {
+                        // an escape in the replacement, gone.
+                        match = match.substring(1);
+                        g1++;
+                    }
+                    if (prefix == '}') {
+                        out.append(match);
+                    } else if (Character.toLowerCase(b.charAt(i + 1)) == Character.toLowerCase(b.charAt(i + 2))
+                            && Character.toLowerCase(b.charAt(i + 3)) == Character.toLowerCase(b.charAt(i + 4))
+                            && Character.toLowerCase(b.charAt(i + 5)) == Character.toLowerCase(b.charAt(i + 6))) {
+                        out.append((b.substring(g1, i) + "#" + b.charAt(i + 1) + b.charAt(i + 3) + b.charAt(i + 5))
+                                .toLowerCase());
+                    } else {
+                        out.append(match.toLowerCase());
+                    }
+                    i += 6;
+                    floor = i + 1;
+                    continue;
+                }
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    private static boolean isColorPrefix(char c) {
+        return c != '"' && c != '\'' && c != '=' && !isWhitespace(c);
+    }
+
+    private static boolean isHex(StringBuilder b, int pos, int len) {
+        if (pos + len > b.length()) {
+            return false;
+        }
+        for (int i = pos; i < pos + len; i++) {
+            char c = b.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turns <code>border:none</code> and the like into <code>border:0</code>, and shortens the IE alpha opacity
+     * filter.
+     */
+    private static StringBuilder noneAndAlpha(StringBuilder b) {
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == ':' && i + 5 < n && startsWithIgnoreCase(b, i + 1, "none") && isTerminator(b.charAt(i + 5))) {
+                String name = longestSuffix(out, NONE_ZERO);
+                if (name != null) {
+                    String found = out.substring(out.length() - name.length());
+                    out.setLength(out.length() - name.length());
+                    out.append(found.toLowerCase()).append(":0").append(b.charAt(i + 5));
+                    i += 5;
+                    continue;
+                }
+            } else if ((c == 'p' || c == 'P') && matchesAlphaOpacity(b, i)) {
+                out.append(ALPHA_OPACITY_SHORT);
+                i += ALPHA_OPACITY.length() - 1;
+                continue;
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Removes rules without declarations.
+     */
+    private static StringBuilder emptyRules(StringBuilder b) {
+
+        if (b.indexOf("{}") < 0) {
+            return b;
+        }
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n);
+        // a rule can't start before the end of the previous removed one.
+        int floor = 0;
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == '{' && i + 1 < n && b.charAt(i + 1) == '}') {
+                // [^\}\{/;]+\{\}
+                int start = out.length();
+                while (start > floor && "}{/;".indexOf(out.charAt(start - 1)) < 0) {
+                    start--;
+                }
+                if (start < out.length()) {
+                    out.setLength(start);
+                    floor = start;
+                    i++;
+                    continue;
+                }
+            }
+            out.append(c);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Breaks the line after every rule, collapses repeated semicolons and puts the strings and preserved comments
+     * back.
+     */
+    private static StringBuilder lineBreaksAndRestore(StringBuilder b, ArrayList<String> preserved) {
+
+        int n = b.length();
+        StringBuilder out = new StringBuilder(n + n / 8);
+
+        for (int i = 0; i < n; i++) {
+            char c = b.charAt(i);
+            if (c == MARKER) {
+                int end = b.indexOf(String.valueOf(MARKER), i + 1);
+                out.append(preserved.get(Integer.parseInt(b.substring(i + 1, end))));
+                i = end;
+            } else if (c == ';' && i > 0 && b.charAt(i - 1) == ';') {
+                continue;
+            } else {
+                out.append(c);
+                if (c == '}') {
+                    out.append('\n');
+                }
+            }
+        }
+
+        return out;
+
+    }
+
+    private static String replaceAlphaOpacity(String s) {
+        if (s.length() < ALPHA_OPACITY.length()) {
+            return s;
+        }
+        StringBuilder b = new StringBuilder(s);
+        StringBuilder out = null;
+        int n = b.length();
+        for (int i = 0; i < n; i++) {
+            if (matchesAlphaOpacity(b, i)) {
+                if (out == null) {
+                    out = new StringBuilder(n);
+                    out.append(b, 0, i);
+                }
+                out.append(ALPHA_OPACITY_SHORT);
+                i += ALPHA_OPACITY.length() - 1;
+            } else if (out != null) {
+                out.append(b.charAt(i));
+            }
+        }
+        return out == null ? s : out.toString();
+    }
+
+    private static boolean matchesAlphaOpacity(StringBuilder b, int pos) {
+        int len = ALPHA_OPACITY.length();
+        if (pos + len > b.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            char p = ALPHA_OPACITY.charAt(i);
+            char c = b.charAt(pos + i);
+            if (p == '.') {
+                if (isLineTerminator(c)) {
+                    return false;
+                }
+            } else if (!equalsIgnoreCase(p, c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The longest of the names the builder ends with, ignoring case, which is where the left most match starts.
+     */
+    private static String longestSuffix(StringBuilder b, String[] names) {
+        String result = null;
+        for (String name : names) {
+            if ((result == null || name.length() > result.length()) && b.length() >= name.length()
+                    && startsWithIgnoreCase(b, b.length() - name.length(), name)) {
+                result = name;
+            }
+        }
+        return result;
+    }
+
+    private static boolean endsWith(StringBuilder b, String s) {
+        return b.length() >= s.length() && startsWith(b, b.length() - s.length(), s);
+    }
+
+    private static boolean startsWith(StringBuilder b, int pos, String s) {
+        if (pos < 0 || pos + s.length() > b.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (b.charAt(pos + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(StringBuilder b, int pos, String s) {
+        if (pos < 0 || pos + s.length() > b.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!equalsIgnoreCase(s.charAt(i), b.charAt(pos + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ascii only, like (?i) without UNICODE_CASE.
+    private static boolean equalsIgnoreCase(char a, char b) {
+        if (a == b) {
+            return true;
+        }
+        if (a >= 'A' && a <= 'Z') {
+            a = (char) (a + ('a' - 'A'));
+        }
+        if (b >= 'A' && b <= 'Z') {
+            b = (char) (b + ('a' - 'A'));
+        }
+        return a == b;
+    }
+
+    // what the dot doesn't match in java.util.regex
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == ';' || c == '}';
+    }
+
+    // same as \s in java.util.regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // same as \w in java.util.regex
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static String yui(String css) {
+        StringWriter writer = new StringWriter();
+        try {
+            new YUICssCompressor(new StringReader(css)).compress(writer, 0);
+        } catch (IOException e) {
+            // not happening with strings.
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+}
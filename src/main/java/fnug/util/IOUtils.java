@@ -1,14 +1,20 @@
 package fnug.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.math.BigInteger;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /*
  Copyright 2010 Martin Algesten
@@ -57,10 +63,21 @@ public class IOUtils {
      * @return the md5 as hexadecimals.
      */
     public static String md5(String s) {
+        return md5(s.getBytes());
+    }
+
+    /**
+     * Makes an md5 sum of the given bytes.
+     * 
+     * @param bytes
+     *            bytes to make sum of.
+     * @return the md5 as hexadecimals.
+     */
+    public static String md5(byte[] bytes) {
         MessageDigest md5;
         try {
             md5 = MessageDigest.getInstance("MD5");
-            md5.update(s.getBytes());
+            md5.update(bytes);
             return new BigInteger(1, md5.digest()).toString(16);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException(e);
@@ -88,18 +105,187 @@ public class IOUtils {
     }
 
     /**
-     * Helper method to normalize <code>../foo/../bar/../</code> style paths.
+     * Maps the given file read only into memory. The mapping stays valid after the file is closed, but the contents
+     * must not be changed or truncated while mapped, which makes this suitable for files that never change.
+     * 
+     * @param file
+     *            file to map.
+     * @return a read only buffer over the whole file.
+     * @throws IOException
+     *             if the file can't be read.
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Copies the given bytes to a read only direct buffer, outside of the heap.
+     * 
+     * @param bytes
+     *            bytes to copy.
+     * @return the direct buffer.
+     */
+    public static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes);
+        buf.flip();
+        return buf.asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the remaining bytes of the given buffer to an array. The buffer's position is not changed.
+     * 
+     * @param buf
+     *            buffer to copy from.
+     * @return the copied bytes.
+     */
+    public static byte[] toBytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the remaining bytes of the given buffer to the output stream. Bytes in an array are written straight
+     * away, other buffers are copied through a small chunk at a time.
+     * 
+     * @param buf
+     *            buffer to write, its position is moved to the end.
+     * @param os
+     *            stream to write to. Not closed.
+     * @throws IOException
+     *             if the stream throws exception.
+     */
+    public static void write(ByteBuffer buf, OutputStream os) throws IOException {
+        if (buf.hasArray()) {
+            os.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            buf.position(buf.limit());
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(os);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * Helper method to normalize <code>../foo/../bar/../</code> style paths. The path is taken as relative to a root,
+     * and the result is absolute. <code>.</code> segments are removed, a <code>..</code> segment removes the segment
+     * before it, and repeated slashes are collapsed. A <code>..</code> that would go above the root is kept, so that
+     * the result starts with <code>/..</code>. This is what {@link java.net.URI#normalize()} does to the path, without building
+     * a uri.
      * 
      * @param path
      *            to normalize
      * @return the normalized path.
      */
     public static String normalize(String path) {
+
+        int len = path.length();
+
+        if (isNormal(path)) {
+            return "/".concat(path);
+        }
+
+        // start and end of the kept segments.
+        int[] starts = new int[len / 2 + 1];
+        int[] ends = new int[len / 2 + 1];
+        int count = 0;
+        boolean trailingSlash = false;
+
+        int pos = 0;
+        while (pos <= len) {
+            int end = path.indexOf('/', pos);
+            if (end < 0) {
+                end = len;
+            }
+            int segLen = end - pos;
+            if (segLen == 0) {
+                // empty segment from a repeated, leading or trailing slash.
+                if (end == len) {
+                    trailingSlash = count > 0;
+                }
+            } else if (segLen == 1 && path.charAt(pos) == '.') {
+                trailingSlash = true;
+            } else if (segLen == 2 && path.charAt(pos) == '.' && path.charAt(pos + 1) == '.' && count > 0
+                    && !isDotDot(path, starts[count - 1], ends[count - 1])) {
+                count--;
+                trailingSlash = true;
+            } else {
+                starts[count] = pos;
+                ends[count] = end;
+                count++;
+                trailingSlash = false;
+            }
+            pos = end + 1;
+        }
+
+        StringBuilder bld = new StringBuilder(len + 1);
+        for (int i = 0; i < count; i++) {
+            bld.append('/').append(path, starts[i], ends[i]);
+        }
+        if (trailingSlash || count == 0) {
+            bld.append('/');
+        }
+        return bld.toString();
+
+    }
+
+    /**
+     * Tells if the path has no empty, <code>.</code> or <code>..</code> segments, other than an empty last segment.
+     */
+    private static boolean isNormal(String path) {
+        int len = path.length();
+        int segStart = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i == len || path.charAt(i) == '/') {
+                int segLen = i - segStart;
+                if (segLen == 0 && i < len) {
+                    return false;
+                }
+                if (segLen == 1 && path.charAt(segStart) == '.') {
+                    return false;
+                }
+                if (segLen == 2 && isDotDot(path, segStart, i)) {
+                    return false;
+                }
+                segStart = i + 1;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDotDot(String path, int start, int end) {
+        return end - start == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.';
+    }
+
+    /**
+     * Gzips the given bytes using the best compression level. Meant for output that is compressed once and then held
+     * in memory, where the extra cpu spent compressing is paid only once.
+     * 
+     * @param bytes
+     *            bytes to compress.
+     * @return the gzipped bytes.
+     */
+    public static byte[] gzip(byte[] bytes) {
         try {
-            URI uri = new URI("http", "fake", "/" + path, "", "");
-            return uri.normalize().getPath();
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException(e.getMessage());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 4 + 32);
+            GZIPOutputStream os = new GZIPOutputStream(baos) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            };
+            os.write(bytes);
+            os.close();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to compress gzip", e);
         }
     }
 
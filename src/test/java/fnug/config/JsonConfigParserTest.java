@@ -62,6 +62,7 @@ public class JsonConfigParserTest {
         Assert.assertNotNull(bcfg.jsCompileArgs());
         Assert.assertEquals(1, bcfg.jsCompileArgs().length);
         Assert.assertEquals("--debug", bcfg.jsCompileArgs()[0].toString());
+        Assert.assertEquals(BundleConfig.CSS_COMPRESSOR_YUI, bcfg.cssCompressor());
         Assert.assertNotNull(bcfg.files());
         Assert.assertEquals(2, bcfg.files().length);
         Assert.assertEquals("test/file1.js", bcfg.files()[0].toString());
@@ -166,6 +167,29 @@ public class JsonConfigParserTest {
 
     }
 
+    @Test
+    public void testCssCompressor() throws Exception {
+
+        DefaultResource res = new DefaultResource("/", "testconfig12-cssCompressor.js");
+
+        JsonConfigParser parser = new JsonConfigParser();
+
+        BundleConfig bcfg = parser.parse(res).getBundleConfigs()[0];
+
+        Assert.assertEquals(BundleConfig.CSS_COMPRESSOR_FAST, bcfg.cssCompressor());
+
+        res = new DefaultResource("/", "testconfig13-badCssCompressor.js");
+
+        try {
+            parser.parse(res);
+            Assert.fail();
+        } catch (JsonConfigParseException jcpe) {
+            Assert.assertEquals("At line 5 col 2: At line 5 col 2: 'cssCompressor' must be 'yui' or 'fast': quick",
+                    jcpe.getMessage());
+        }
+
+    }
+
     @Test
     public void testBaseNotExisting() throws Exception {
 
@@ -1,12 +1,17 @@
 package fnug.resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import fnug.resource.AbstractResource;
+import fnug.util.IOUtils;
 
 public class AbstractResourceTest {
 
@@ -104,6 +109,93 @@ public class AbstractResourceTest {
 
     }
 
+    @Test
+    public void testGzipBytes() throws Exception {
+
+        TestResource res = new TestResource("/", "foo.js", "somedata", 123l);
+
+        byte[] gz = res.getGzipBytes();
+
+        Assert.assertEquals(1, res.readEntryCount);
+        Assert.assertTrue(Arrays.equals("somedata".getBytes(), gunzip(gz)));
+
+        // held, not compressed again.
+        Assert.assertSame(gz, res.getGzipBytes());
+
+        res.data = "otherdata";
+        res.lastModified = 1234l;
+
+        Assert.assertTrue(res.checkModified());
+
+        byte[] gz2 = res.getGzipBytes();
+
+        Assert.assertEquals(2, res.readEntryCount);
+        Assert.assertNotSame(gz, gz2);
+        Assert.assertTrue(Arrays.equals("otherdata".getBytes(), gunzip(gz2)));
+
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+
+        TestResource res = new TestResource("/", "foo.js", "somedata", 123l);
+        res.offHeap = true;
+
+        Assert.assertEquals("somedata", new String(res.getBytes()));
+        // copied for every call.
+        Assert.assertNotSame(res.getBytes(), res.getBytes());
+
+        ByteBuffer buf = res.getByteBuffer();
+        Assert.assertTrue(buf.isDirect());
+        Assert.assertTrue(buf.isReadOnly());
+        Assert.assertEquals(8, buf.remaining());
+
+        ByteBuffer gz = res.getGzipByteBuffer();
+        Assert.assertTrue(gz.isDirect());
+        Assert.assertTrue(Arrays.equals("somedata".getBytes(), gunzip(IOUtils.toBytes(gz))));
+        Assert.assertTrue(Arrays.equals(res.getGzipBytes(), IOUtils.toBytes(res.getGzipByteBuffer())));
+        Assert.assertEquals(1, res.readEntryCount);
+
+        res.data = "otherdata";
+        res.lastModified = 1234l;
+        Assert.assertTrue(res.checkModified());
+
+        Assert.assertTrue(Arrays.equals("otherdata".getBytes(), gunzip(res.getGzipBytes())));
+
+        // on heap, the buffer wraps the bytes.
+        res = new TestResource("/", "foo.js", "somedata", 123l);
+        Assert.assertSame(res.getBytes(), res.getByteBuffer().array());
+
+    }
+
+    @Test
+    public void testETag() throws Exception {
+
+        TestResource res = new TestResource("/", "foo.js", "somedata", 123l);
+
+        String eTag = res.getETag();
+
+        Assert.assertEquals("\"" + IOUtils.md5("somedata") + "\"", eTag);
+        Assert.assertSame(eTag, res.getETag());
+
+        // same content, other date, gives same tag.
+        res.lastModified = 5000l;
+        Assert.assertTrue(res.checkModified());
+        Assert.assertEquals(eTag, res.getETag());
+
+        res.data = "otherdata";
+        res.lastModified = 10000l;
+        Assert.assertTrue(res.checkModified());
+        Assert.assertEquals("\"" + IOUtils.md5("otherdata") + "\"", res.getETag());
+
+    }
+
+    private byte[] gunzip(byte[] gz) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        IOUtils.spool(new GZIPInputStream(new ByteArrayInputStream(gz)), baos);
+        return baos.toByteArray();
+    }
+
     private class TestResource extends AbstractResource {
 
         int readLastModifiedCount = 0;
@@ -111,6 +203,7 @@ public class AbstractResourceTest {
 
         long lastModified;
         String data;
+        boolean offHeap;
 
         protected TestResource(String basePath, String path) {
             super(basePath, path);
@@ -125,6 +218,9 @@ public class AbstractResourceTest {
         @Override
         protected Entry readEntry() {
             readEntryCount++;
+            if (offHeap) {
+                return new Entry(lastModified, IOUtils.direct(data.getBytes()));
+            }
             return new Entry(lastModified, data.getBytes());
         }
 
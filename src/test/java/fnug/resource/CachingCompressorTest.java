@@ -0,0 +1,97 @@
+package fnug.resource;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fnug.util.IOUtils;
+
+public class CachingCompressorTest {
+
+    private File dir;
+
+    @Before
+    public void before() throws Exception {
+        dir = File.createTempFile("fnug-cache", "");
+        dir.delete();
+    }
+
+    @After
+    public void after() {
+        IOUtils.rm(dir);
+    }
+
+    @Test
+    public void testCachingCompressor() throws Exception {
+
+        CountingCompressor counting = new CountingCompressor();
+
+        CachingCompressor comp = new CachingCompressor(counting, dir, "a");
+        Assert.assertEquals("ABC", new String(comp.compress("abc".getBytes())));
+        Assert.assertEquals(1, counting.count);
+        Assert.assertEquals(1, dir.listFiles().length);
+
+        // a new instance, like after a restart, reads from disk.
+        comp = new CachingCompressor(counting, dir, "a");
+        Assert.assertEquals("ABC", new String(comp.compress("abc".getBytes())));
+        Assert.assertEquals(1, counting.count);
+
+        // other input
+        Assert.assertEquals("DEF", new String(comp.compress("def".getBytes())));
+        Assert.assertEquals(2, counting.count);
+
+        // other args
+        comp = new CachingCompressor(counting, dir, "b");
+        Assert.assertEquals("ABC", new String(comp.compress("abc".getBytes())));
+        Assert.assertEquals(3, counting.count);
+        Assert.assertEquals(3, dir.listFiles().length);
+
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+
+        CachingCompressor comp = new CachingCompressor(new Compressor() {
+            @Override
+            public String name() {
+                return "javascript";
+            }
+
+            @Override
+            public byte[] compress(byte[] input) {
+                throw new JsCompilationFailedException("bad", null);
+            }
+        }, dir);
+
+        try {
+            comp.compress("abc".getBytes());
+            Assert.fail();
+        } catch (JsCompilationFailedException e) {
+            // expected
+        }
+
+        Assert.assertFalse(dir.exists() && dir.listFiles().length > 0);
+
+    }
+
+    private static class CountingCompressor implements Compressor {
+
+        int count;
+
+        @Override
+        public String name() {
+            return "javascript";
+        }
+
+        @Override
+        public byte[] compress(byte[] input) {
+            count++;
+            return new String(input).toUpperCase().getBytes();
+        }
+
+    }
+
+}
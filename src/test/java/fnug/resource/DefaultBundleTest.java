@@ -1,6 +1,10 @@
 package fnug.resource;
 
+import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 
 import junit.framework.Assert;
 
@@ -86,7 +90,7 @@ public class DefaultBundleTest {
     }
 
     @Test
-    public void testResourceCollections() {
+    public void testResourceCollections() throws Exception {
 
         final DefaultBundle b = new DefaultBundle(makeBundleConfig("test", new String[] { "test/js-resource1.js" }));
 
@@ -122,6 +126,20 @@ public class DefaultBundleTest {
         Assert.assertNotNull(r);
         Assert.assertEquals(DefaultCompressedResource.class, r.getClass());
 
+        String hash = coll.getPath().substring(coll.getPath().indexOf('-') + 1);
+        for (String path : new String[] { coll.getFullPath() + ".jsx", coll.getFullPath() + "x.js",
+                "test/test-" + hash.toUpperCase() + ".js", "test/test-.js", "test/-" + hash + ".js",
+                "test/" + coll.getPath() + ".js.js", "tes/" + coll.getPath() + ".js", "test/test-0.js" }) {
+            Assert.assertEquals(path, DefaultBundleResource.class, b.resolve(path).getClass());
+        }
+
+        // a miss doesn't rebuild the index.
+        Field field = DefaultBundle.class.getDeclaredField("collectionIndex");
+        field.setAccessible(true);
+        Object index = field.get(b);
+        b.resolve("test/test-0123abcdef.js");
+        Assert.assertSame(index, field.get(b));
+
     }
 
     @Test
@@ -185,15 +203,32 @@ public class DefaultBundleTest {
 
         DefaultBundle b = new DefaultBundle(makeBundleConfig("test", new String[] { "test/js-resource1.js" }));
 
-        try {
-            for (int i = 0; i < 100000; i++) {
-                b.resolve("some/file" + i + ".js");
-            }
-            Assert.fail();
-        } catch (IllegalStateException ise) {
-            // expected
+        Resource first = b.resolve("some/file0.js");
+        Assert.assertSame(first, b.resolve("some/file0.js"));
+
+        for (int i = 1; i < 100000; i++) {
+            b.resolve("some/file" + i + ".js");
         }
 
+        // the oldest missing resources are dropped rather than filling the heap.
+        Assert.assertNotSame(first, b.resolve("some/file0.js"));
+        Assert.assertEquals(-1l, b.resolve("some/file0.js").getLastModified());
+
+        // a path asked for again is queued last, not dropped right away.
+        Resource again = b.resolve("some/file0.js");
+        for (int i = 0; i < 100; i++) {
+            b.resolve("some/more" + i + ".js");
+        }
+        Assert.assertSame(again, b.resolve("some/file0.js"));
+
+        // only a resource that was read is known to exist.
+        Resource existing = b.resolve("test/js-resource1.js");
+        Assert.assertTrue(existing.getLastModified() > 0);
+        for (int i = 0; i < 2000; i++) {
+            b.resolve("some/other" + i + ".js");
+        }
+        Assert.assertSame(existing, b.resolve("test/js-resource1.js"));
+
     }
 
     @Test
@@ -259,6 +294,115 @@ public class DefaultBundleTest {
 
     }
 
+    @Test
+    public void testKeepCollectionsWhenEdgesUnchanged() {
+
+        final HashMap<String, MutableResource> files = new HashMap<String, MutableResource>();
+
+        final DefaultBundle b = new DefaultBundle(makeBundleConfig("test", new String[] { "test/a.js" })) {
+            @Override
+            protected Resource makeResource(String path) {
+                MutableResource r = new MutableResource(this, path);
+                files.put(path, r);
+                return r;
+            }
+        };
+
+        ResourceResolver.setThreadLocal(new ResourceResolver() {
+            @Override
+            public Resource resolve(String path) {
+                return b.resolve(path);
+            }
+        });
+
+        b.resolve("test/a.js");
+        b.resolve("test/b.js");
+        b.resolve("test/c.js");
+        files.get("test/a.js").set("@requires test/b.js\nvar a;\n", 1000l);
+        files.get("test/b.js").set("var b;\n", 1000l);
+        files.get("test/c.js").set("var c;\n", 1000l);
+
+        ResourceCollection[] colls = b.getResourceCollections();
+        Assert.assertEquals(1, colls.length);
+        Assert.assertEquals("[test/b.js, test/a.js]", Arrays.asList(colls[0].getAggregates()).toString());
+        Assert.assertEquals("var b;\n@requires test/b.js\nvar a;\n", new String(colls[0].getBytes()));
+
+        Assert.assertFalse(b.checkModified());
+
+        Assert.assertEquals(DefaultCompressedResource.class, b.resolve(colls[0].getFullPath() + ".js").getClass());
+
+        // content change, same requires.
+        files.get("test/b.js").set("var bb;\n", 5000l);
+        int scans = files.get("test/a.js").scans;
+
+        Assert.assertTrue(b.checkModified());
+        Assert.assertSame(colls, b.getResourceCollections());
+        Assert.assertEquals(scans, files.get("test/a.js").scans);
+        Assert.assertEquals("var bb;\n@requires test/b.js\nvar a;\n", new String(colls[0].getBytes()));
+        Assert.assertEquals(DefaultCompressedResource.class, b.resolve(colls[0].getFullPath() + ".js").getClass());
+
+        // requires change.
+        files.get("test/a.js").set("@requires test/b.js\n@requires test/c.js\nvar a;\n", 9000l);
+
+        Assert.assertTrue(b.checkModified());
+        ResourceCollection[] newColls = b.getResourceCollections();
+        Assert.assertNotSame(colls, newColls);
+        Assert.assertEquals("[test/b.js, test/c.js, test/a.js]", Arrays.asList(newColls[0].getAggregates())
+                .toString());
+
+    }
+
+    private static class MutableResource extends AbstractResource implements HasBundle {
+
+        private Bundle bundle;
+        private String content = "";
+        private long lastModified = -1;
+        private int scans;
+
+        MutableResource(Bundle bundle, String path) {
+            super("/", path);
+            this.bundle = bundle;
+        }
+
+        void set(String content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public Bundle getBundle() {
+            return bundle;
+        }
+
+        @Override
+        public String getContentType() {
+            return CONTENT_TYPE_TEXT_JAVASCRIPT;
+        }
+
+        @Override
+        public List<String> findRequiresTags() {
+            scans++;
+            List<String> result = new LinkedList<String>();
+            for (String line : new String(getBytes()).split("\n")) {
+                if (line.startsWith("@requires ")) {
+                    result.add(line.substring(10));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        protected Entry readEntry() {
+            return new Entry(lastModified, content.getBytes());
+        }
+
+        @Override
+        protected long readLastModified() {
+            return lastModified;
+        }
+
+    }
+
     private BundleConfig makeBundleConfig(final String bundleName, final String[] files) {
         return new DefaultBundleConfig(new DefaultResource("/", "testconfig1-simple.js"), bundleName, "/",
                 new String[] {}, 1, null, files);
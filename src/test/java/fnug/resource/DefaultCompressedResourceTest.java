@@ -0,0 +1,175 @@
+package fnug.resource;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fnug.config.DefaultBundleConfig;
+import fnug.util.IOUtils;
+
+public class DefaultCompressedResourceTest {
+
+    @Test
+    public void testSync() throws Exception {
+
+        DefaultCompressedResource r = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                "abc".getBytes(), 1000l, new UpperCompressor(null));
+
+        Assert.assertFalse(r.isCompressed());
+        Assert.assertEquals("ABC", new String(r.getBytes()));
+        Assert.assertTrue(r.isCompressed());
+
+    }
+
+    @Test
+    public void testSyncGzipAndETag() throws Exception {
+
+        DefaultCompressedResource r = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                "abc".getBytes(), 1000l, new UpperCompressor(null));
+
+        // gzip and etag compress first, they never see the uncompressed bytes.
+        Assert.assertTrue(Arrays.equals(IOUtils.gzip("ABC".getBytes()), r.getGzipBytes()));
+        Assert.assertTrue(r.isCompressed());
+
+        DefaultCompressedResource r2 = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                "abc".getBytes(), 1000l, new UpperCompressor(null));
+
+        Assert.assertEquals("\"" + IOUtils.md5("ABC".getBytes()) + "\"", r2.getETag());
+        Assert.assertTrue(r2.isCompressed());
+        Assert.assertEquals("ABC", new String(r2.getBytes()));
+
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+
+        ResourceResolver resolver = new ResourceResolver();
+        resolver.getGlobalConfig().setOffHeap(true);
+        ResourceResolver.setThreadLocal(resolver);
+
+        try {
+
+            DefaultCompressedResource r = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                    "abc".getBytes(), 1000l, new UpperCompressor(null));
+
+            // compressed off heap from the first call.
+            Assert.assertTrue(r.getByteBuffer().isDirect());
+            Assert.assertTrue(r.isCompressed());
+            Assert.assertEquals("ABC", new String(r.getBytes()));
+            Assert.assertEquals("ABC", new String(r.compress()));
+            Assert.assertTrue(r.getGzipByteBuffer().isDirect());
+            Assert.assertTrue(Arrays.equals(IOUtils.gzip("ABC".getBytes()), r.getGzipBytes()));
+
+            DefaultCompressedResource r2 = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                    "abc".getBytes(), 1000l, new UpperCompressor(null));
+
+            Assert.assertTrue(r2.getGzipByteBuffer().isDirect());
+            Assert.assertTrue(Arrays.equals(IOUtils.gzip("ABC".getBytes()), r2.getGzipBytes()));
+
+        } finally {
+            ResourceResolver.setThreadLocal(null);
+        }
+
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final LinkedList<Runnable> queued = new LinkedList<Runnable>();
+
+        DefaultCompressedResource r = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                "abc".getBytes(), 1000l, new UpperCompressor(latch), new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        queued.add(command);
+                    }
+                });
+
+        // served uncompressed while compiling, and only scheduled once.
+        Assert.assertEquals("abc", new String(r.getBytes()));
+        Assert.assertEquals("abc", new String(r.getBytes()));
+        Assert.assertEquals(1, queued.size());
+        Assert.assertFalse(r.isCompressed());
+        String uncompressedETag = r.getETag();
+
+        latch.countDown();
+        queued.removeFirst().run();
+
+        Assert.assertTrue(r.isCompressed());
+        Assert.assertEquals("ABC", new String(r.getBytes()));
+        Assert.assertFalse(uncompressedETag.equals(r.getETag()));
+        Assert.assertEquals(0, queued.size());
+
+    }
+
+    @Test
+    public void testAsyncFailure() throws Exception {
+
+        final LinkedList<Runnable> queued = new LinkedList<Runnable>();
+
+        DefaultCompressedResource r = new DefaultCompressedResource(makeBundle(), "test/", "test.js",
+                "abc".getBytes(), 1000l, new Compressor() {
+                    @Override
+                    public String name() {
+                        return "javascript";
+                    }
+
+                    @Override
+                    public byte[] compress(byte[] input) {
+                        throw new JsCompilationFailedException("bad", null);
+                    }
+                }, new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        queued.add(command);
+                    }
+                });
+
+        Assert.assertEquals("abc", new String(r.getBytes()));
+        queued.removeFirst().run();
+
+        // keeps serving uncompressed, no new attempts.
+        Assert.assertEquals("abc", new String(r.getBytes()));
+        Assert.assertFalse(r.isCompressed());
+        Assert.assertEquals(0, queued.size());
+
+    }
+
+    private Bundle makeBundle() {
+        return new DefaultBundle(new DefaultBundleConfig(new DefaultResource("/", "testconfig1-simple.js"), "test",
+                "/", null, 0, null, null));
+    }
+
+    private static class UpperCompressor implements Compressor {
+
+        private CountDownLatch latch;
+
+        UpperCompressor(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public String name() {
+            return "javascript";
+        }
+
+        @Override
+        public byte[] compress(byte[] input) {
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return new String(input).toUpperCase().getBytes();
+        }
+
+    }
+
+}
@@ -197,6 +197,11 @@ public class DefaultResourceCollectionTest {
                         return null;
                     }
 
+                    @Override
+                    public String cssCompressor() {
+                        return null;
+                    }
+
                     @Override
                     public String[] files() {
                         return null;
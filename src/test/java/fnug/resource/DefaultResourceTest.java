@@ -9,7 +9,10 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -122,6 +125,18 @@ public class DefaultResourceTest {
     @Test
     public void testRemoveExtractedFile() throws Exception {
 
+        ResourceResolver.setThreadLocal(makeExtractingResolver());
+        try {
+            doTestRemoveExtractedFile();
+        } finally {
+            ResourceResolver.setThreadLocal(null);
+        }
+
+    }
+
+
+    private void doTestRemoveExtractedFile() throws Exception {
+
         File tmp = makeTmpJar();
 
         DefaultResource r = makeJarResource(tmp.getAbsolutePath(), "dir/injar.js", 1);
@@ -169,6 +184,18 @@ public class DefaultResourceTest {
     @Test
     public void testUpdateJarFileTimestamp() throws Exception {
 
+        ResourceResolver.setThreadLocal(makeExtractingResolver());
+        try {
+            doTestUpdateJarFileTimestamp();
+        } finally {
+            ResourceResolver.setThreadLocal(null);
+        }
+
+    }
+
+
+    private void doTestUpdateJarFileTimestamp() throws Exception {
+
         File tmp = makeTmpJar();
 
         DefaultResource r = makeJarResource(tmp.getAbsolutePath(), "dir/injar.js", 1);
@@ -199,6 +226,121 @@ public class DefaultResourceTest {
     }
 
 
+    @Test
+    public void testSharedJarExtraction() throws Exception {
+
+        ResourceResolver.setThreadLocal(makeExtractingResolver());
+        try {
+
+            File tmp = makeTmpJar();
+
+            DefaultResource r1 = makeJarResource(tmp.getAbsolutePath(), "dir/injar.js", 1);
+            DefaultResource r2 = makeJarResource(tmp.getAbsolutePath(), "META-INF/MANIFEST.MF", 1);
+
+            Assert.assertEquals("Hidden inside a jar...\n", new String(r1.getBytes()));
+            Assert.assertTrue(r2.getBytes().length > 0);
+
+            Field field = DefaultResource.class.getDeclaredField("extracted");
+            field.setAccessible(true);
+            ExtractedJar extracted = (ExtractedJar) field.get(r1);
+            Assert.assertSame(extracted, field.get(r2));
+            Assert.assertEquals(1, extracted.check(Long.MAX_VALUE));
+            File first = extracted.getDir();
+
+            tmp.setLastModified(tmp.lastModified() + 2000);
+
+            // one extraction, seen by both.
+            Thread.sleep(10);
+            Assert.assertTrue(r1.checkModified());
+            Assert.assertTrue(r2.checkModified());
+            Assert.assertEquals(2, extracted.check(Long.MAX_VALUE));
+
+            Assert.assertEquals("Hidden inside a jar...\n", new String(r1.getBytes()));
+            Thread.sleep(10);
+            Assert.assertFalse(r1.checkModified());
+            Assert.assertFalse(r2.checkModified());
+
+            // a new directory per extraction, the previous one is kept for readers still in it.
+            File dir = extracted.getDir();
+            Assert.assertFalse(first.equals(dir));
+            Assert.assertTrue(new File(first, "dir/injar.js").isFile());
+            Assert.assertTrue(new File(dir, "dir/injar.js").isFile());
+            Assert.assertEquals(2, dir.getParentFile().list().length);
+
+            // older ones are removed.
+            tmp.setLastModified(tmp.lastModified() + 2000);
+            Thread.sleep(10);
+            Assert.assertEquals(3, extracted.check(0));
+            Assert.assertFalse(first.exists());
+            Assert.assertEquals(2, dir.getParentFile().list().length);
+
+        } finally {
+            ResourceResolver.setThreadLocal(null);
+        }
+
+    }
+
+
+    @Test
+    public void testReadJarEntryDirectly() throws Exception {
+
+        File tmp = makeTmpJar();
+
+        DefaultResource r = makeJarResource(tmp.getAbsolutePath(), "dir/injar.js", 1);
+
+        Assert.assertEquals("Hidden inside a jar...\n", new String(r.getBytes()));
+        Assert.assertTrue(r.getLastModified() > 0);
+
+        // nothing extracted.
+        Field field = DefaultResource.class.getDeclaredField("file");
+        field.setAccessible(true);
+        Assert.assertNull(field.get(r));
+
+        Thread.sleep(10);
+        Assert.assertFalse(r.checkModified());
+
+        DefaultResource missing = makeJarResource(tmp.getAbsolutePath(), "dir/nosuchfile.js", 1);
+        Assert.assertEquals(0, missing.getBytes().length);
+        Assert.assertEquals(-1l, missing.getLastModified());
+
+    }
+
+
+    @Test
+    public void testReplaceJarEntry() throws Exception {
+
+        File tmp = makeTmpJar();
+
+        DefaultResource r = makeJarResource(tmp.getAbsolutePath(), "dir/injar.js", 1);
+        long l = r.getLastModified();
+        Assert.assertEquals("Hidden inside a jar...\n", new String(r.getBytes()));
+
+        // same entry time, different contents.
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(tmp));
+        ZipEntry entry = new ZipEntry("dir/injar.js");
+        entry.setTime(l);
+        zos.putNextEntry(entry);
+        zos.write("Replaced...\n".getBytes());
+        zos.closeEntry();
+        zos.close();
+        tmp.setLastModified(tmp.lastModified() + 2000);
+
+        Thread.sleep(10);
+        Assert.assertTrue(r.checkModified());
+        Assert.assertEquals("Replaced...\n", new String(r.getBytes()));
+
+        Thread.sleep(10);
+        Assert.assertFalse(r.checkModified());
+
+        Assert.assertTrue(tmp.delete());
+
+        Thread.sleep(10);
+        Assert.assertTrue(r.checkModified());
+        Assert.assertEquals(0, r.getBytes().length);
+
+    }
+
+
     @Test
     public void testFindRequiresTags() throws Exception {
 
@@ -265,6 +407,13 @@ public class DefaultResourceTest {
     }
 
 
+    private ResourceResolver makeExtractingResolver() {
+        ResourceResolver resolver = new ResourceResolver();
+        resolver.getGlobalConfig().setExtractJars(true);
+        return resolver;
+    }
+
+
     private File makeTmpJar() throws IOException {
 
         File tmp = File.createTempFile("tmp", ".jar");
@@ -301,4 +450,35 @@ public class DefaultResourceTest {
         };
     }
 
+
+    @Test
+    public void testOffHeap() throws Exception {
+
+        ResourceResolver resolver = new ResourceResolver();
+        resolver.getGlobalConfig().setOffHeap(true);
+        ResourceResolver.setThreadLocal(resolver);
+
+        try {
+
+            // copied to a direct buffer, since the file may change.
+            DefaultResource r = new DefaultResource("/", "test/js-resource1.js");
+
+            Assert.assertTrue(r.getByteBuffer().isDirect());
+            Assert.assertTrue(new String(r.getBytes(), "utf-8").contains("var c = function"));
+            Assert.assertEquals("[test/js-resource2.js, test/js-nonexistant.js, " +
+                    "test/css-resource1.css, test/css-nonexistant.css]", r.findRequiresTags().toString());
+
+            // mapped when modification checks are off.
+            resolver.getGlobalConfig().setNoModify(true);
+            DefaultResource r2 = new DefaultResource("/", "test/js-resource1.js");
+
+            Assert.assertTrue(r2.getByteBuffer().isDirect());
+            Assert.assertTrue(Arrays.equals(r.getBytes(), r2.getBytes()));
+
+        } finally {
+            ResourceResolver.setThreadLocal(null);
+        }
+
+    }
+
 }
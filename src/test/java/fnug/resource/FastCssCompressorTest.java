@@ -0,0 +1,49 @@
+package fnug.resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FastCssCompressorTest {
+
+    @Test
+    public void testCompressCss() throws Exception {
+
+        String css = "body { background: black; \n\n\n\n     color: white; margin:   14px 14px    14px 14px; }";
+
+        FastCssCompressor comp = new FastCssCompressor();
+        String c = new String(comp.compress(css.getBytes()));
+
+        Assert.assertEquals("body{background:black;color:white;margin:14px 14px 14px 14px}", c);
+        Assert.assertEquals(c, new String(new CssCompressor().compress(css.getBytes())));
+
+    }
+
+    @Test
+    public void testCompressBadCss() throws Exception {
+
+        String css = "body { background: ";
+
+        FastCssCompressor comp = new FastCssCompressor();
+        String c = new String(comp.compress(css.getBytes()));
+
+        Assert.assertEquals("body{background:", c);
+
+        css = "body { background: }";
+
+        c = new String(comp.compress(css.getBytes()));
+
+        Assert.assertEquals("body{background:}", c);
+
+    }
+
+    @Test
+    public void testUtf8() throws Exception {
+
+        String css = "a { content: \"\u00e5\u00e4\u00f6\" ; font-family : \u017b }";
+
+        byte[] expect = new CssCompressor().compress(css.getBytes("utf-8"));
+        Assert.assertArrayEquals(expect, new FastCssCompressor().compress(css.getBytes("utf-8")));
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package fnug.resource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fnug.util.IOUtils;
+
+public class FileWatcherTest {
+
+    private File dir;
+    private FileWatcher watcher;
+
+    @Before
+    public void before() throws Exception {
+        dir = File.createTempFile("fnug-watch", "");
+        dir.delete();
+        dir.mkdirs();
+        watcher = new FileWatcher();
+    }
+
+    @After
+    public void after() {
+        watcher.close();
+        IOUtils.rm(dir);
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+
+        File f1 = new File(dir, "f1.js");
+        File f2 = new File(dir, "f2.js");
+        write(f1, "a");
+        write(f2, "b");
+
+        FileWatcher.Watch w1 = watcher.watch(f1);
+        FileWatcher.Watch w2 = watcher.watch(f2);
+
+        Assert.assertTrue(watcher.isComplete());
+        Assert.assertFalse(w1.checkDirty());
+        Assert.assertFalse(w2.checkDirty());
+
+        long gen = watcher.getGeneration();
+
+        write(f1, "aa");
+
+        // the event arrives on the background thread
+        long until = System.currentTimeMillis() + 30000;
+        while (watcher.getGeneration() == gen && System.currentTimeMillis() < until) {
+            Thread.sleep(20);
+        }
+
+        Assert.assertTrue(watcher.getGeneration() > gen);
+        Assert.assertTrue(w1.checkDirty());
+        Assert.assertFalse(w1.checkDirty());
+        Assert.assertFalse(w2.checkDirty());
+
+    }
+
+    @Test
+    public void testReleased() throws Exception {
+
+        File f1 = new File(dir, "f1.js");
+        write(f1, "a");
+
+        FileWatcher.Watch w1 = watcher.watch(f1);
+        watcher.watch(f1);
+
+        // the unreferenced watch is dropped once collected.
+        long until = System.currentTimeMillis() + 30000;
+        while (watcher.getWatchCount() > 1 && System.currentTimeMillis() < until) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        Assert.assertEquals(1, watcher.getWatchCount());
+        Assert.assertFalse(w1.checkDirty());
+
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        File f1 = new File(dir, "f1.js");
+        write(f1, "a");
+
+        FileWatcher.Watch w1 = watcher.watch(f1);
+        Assert.assertFalse(w1.checkDirty());
+
+        long gen = watcher.getGeneration();
+        watcher.close();
+
+        long until = System.currentTimeMillis() + 30000;
+        while (watcher.getGeneration() == gen && System.currentTimeMillis() < until) {
+            Thread.sleep(20);
+        }
+
+        // can't tell anymore, so always dirty.
+        Assert.assertFalse(watcher.isComplete());
+        Assert.assertTrue(w1.checkDirty());
+        Assert.assertTrue(w1.checkDirty());
+
+    }
+
+    private void write(File f, String s) throws Exception {
+        FileOutputStream fos = new FileOutputStream(f);
+        fos.write(s.getBytes());
+        fos.close();
+    }
+
+}
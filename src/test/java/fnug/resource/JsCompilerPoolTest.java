@@ -0,0 +1,72 @@
+package fnug.resource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsCompilerPoolTest {
+
+    @Test
+    public void testSharedPerArgs() {
+
+        Assert.assertSame(JsCompilerPool.get(), JsCompilerPool.get());
+        Assert.assertSame(JsCompilerPool.get(), JsCompilerPool.get((String[]) null));
+        Assert.assertSame(JsCompilerPool.get("--foo", "bar"), JsCompilerPool.get("--foo", "bar"));
+        Assert.assertNotSame(JsCompilerPool.get(), JsCompilerPool.get("--foo", "bar"));
+
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+
+        JsCompilerPool pool = JsCompilerPool.get();
+
+        pool.warmup();
+        int created = pool.getCreatedCount();
+
+        for (int i = 0; i < 5; i++) {
+            pool.compile("var a = " + i + ";");
+            new JsCompressor().compress("var b = 1;".getBytes());
+        }
+
+        Assert.assertEquals(created, pool.getCreatedCount());
+        Assert.assertTrue(pool.getIdleCount() > 0);
+
+    }
+
+    @Test
+    public void testBoundedIdle() throws Exception {
+
+        final JsCompilerPool pool = JsCompilerPool.get();
+        final int threads = JsCompilerPool.MAX_IDLE + 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        pool.compile("var a = 1;");
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        Assert.assertEquals(0, failed.get());
+        Assert.assertTrue(pool.getIdleCount() <= JsCompilerPool.MAX_IDLE);
+
+    }
+
+}
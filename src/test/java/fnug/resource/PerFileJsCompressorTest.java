@@ -0,0 +1,97 @@
+package fnug.resource;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PerFileJsCompressorTest {
+
+    @Test
+    public void testCompileChangedOnly() {
+
+        // unique per run, the fragment cache is shared.
+        String id = "" + System.nanoTime();
+        byte[] a = ("var a" + id + " = 1;").getBytes();
+        byte[] b = ("var b" + id + " = 2;").getBytes();
+        byte[] c = ("var c" + id + " = 3;").getBytes();
+
+        CountingCompressor counting = new CountingCompressor();
+
+        byte[] out = new PerFileJsCompressor(counting, fragments(a, b)).compress(join(a, b));
+        Assert.assertEquals(("VAR A" + id + " = 1;\nVAR B" + id + " = 2;\n"), new String(out));
+        Assert.assertEquals(Arrays.asList("var a" + id + " = 1;", "var b" + id + " = 2;"), counting.compiled);
+
+        counting.compiled.clear();
+
+        out = new PerFileJsCompressor(counting, fragments(a, c)).compress(join(a, c));
+        Assert.assertEquals(("VAR A" + id + " = 1;\nVAR C" + id + " = 3;\n"), new String(out));
+        Assert.assertEquals(Arrays.asList("var c" + id + " = 3;"), counting.compiled);
+
+        // other arguments, other cache entries.
+        counting.compiled.clear();
+        new PerFileJsCompressor(counting, fragments(a), "--foo").compress(a);
+        Assert.assertEquals(Arrays.asList("var a" + id + " = 1;"), counting.compiled);
+
+    }
+
+    @Test
+    public void testMismatchCompilesWhole() {
+
+        CountingCompressor counting = new CountingCompressor();
+        byte[] a = "var x = 1;".getBytes();
+
+        byte[] out = new PerFileJsCompressor(counting, fragments(a)).compress("var y = 2;".getBytes());
+        Assert.assertEquals("VAR Y = 2;", new String(out));
+        Assert.assertEquals(Arrays.asList("var y = 2;"), counting.compiled);
+
+        counting.compiled.clear();
+        out = new PerFileJsCompressor(counting, null).compress(a);
+        Assert.assertEquals("VAR X = 1;", new String(out));
+        Assert.assertEquals(Arrays.asList("var x = 1;"), counting.compiled);
+
+    }
+
+    @Test
+    public void testSupports() {
+
+        Assert.assertTrue(PerFileJsCompressor.supports(null));
+        Assert.assertTrue(PerFileJsCompressor.supports(new String[] {}));
+        Assert.assertTrue(PerFileJsCompressor.supports(new String[] { "--compilation_level", "SIMPLE_OPTIMIZATIONS" }));
+        Assert.assertTrue(PerFileJsCompressor.supports(new String[] { "--compilation_level=WHITESPACE_ONLY" }));
+        Assert.assertFalse(PerFileJsCompressor.supports(new String[] { "--compilation_level",
+                "ADVANCED_OPTIMIZATIONS" }));
+
+    }
+
+    private List<byte[]> fragments(byte[]... bytes) {
+        return new LinkedList<byte[]>(Arrays.asList(bytes));
+    }
+
+    private byte[] join(byte[] b1, byte[] b2) {
+        byte[] result = new byte[b1.length + b2.length];
+        System.arraycopy(b1, 0, result, 0, b1.length);
+        System.arraycopy(b2, 0, result, b1.length, b2.length);
+        return result;
+    }
+
+    private static class CountingCompressor implements Compressor {
+
+        private LinkedList<String> compiled = new LinkedList<String>();
+
+        @Override
+        public String name() {
+            return "javascript";
+        }
+
+        @Override
+        public byte[] compress(byte[] input) {
+            compiled.add(new String(input));
+            return new String(input).toUpperCase().getBytes();
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package fnug.resource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequiresCacheTest {
+
+    private HashMap<String, CountingResource> resources = new HashMap<String, CountingResource>();
+    private ResourceResolver resolver;
+
+    @Before
+    public void before() {
+        resources.put("a", new CountingResource("a", 1000l, "b"));
+        resources.put("b", new CountingResource("b", 1000l, "c", "nothere"));
+        resources.put("c", new CountingResource("c", 1000l));
+        resolver = new ResourceResolver() {
+            @Override
+            public Resource resolve(String path) {
+                return resources.get(path);
+            }
+        };
+        ResourceResolver.setThreadLocal(resolver);
+    }
+
+    @Test
+    public void testRequiresCache() throws Exception {
+
+        RequiresCache cache = resolver.getRequiresCache();
+
+        RequiresCache.Requires req = cache.get(resources.get("b"));
+        Assert.assertEquals(Arrays.asList("c", "nothere"), req.getTags());
+        Assert.assertEquals(1, req.getResolved().size());
+        Assert.assertSame(resources.get("c"), req.getResolved().get(0));
+        Assert.assertSame(req, cache.get(resources.get("b")));
+        Assert.assertEquals(1, resources.get("b").scans);
+
+        // new version
+        resources.get("b").lastModified = 2000l;
+        Assert.assertNotSame(req, cache.get(resources.get("b")));
+        Assert.assertEquals(2, resources.get("b").scans);
+
+        // other instance, same path
+        CountingResource other = new CountingResource("b", 2000l);
+        Assert.assertTrue(cache.get(other).getTags().isEmpty());
+
+    }
+
+    @Test
+    public void testSharedBetweenPasses() throws Exception {
+
+        List<Resource> result = new Tarjan(resources.get("a")).getResult();
+        Assert.assertEquals("[c, b, a]", result.toString());
+
+        result = new Tarjan(resources.get("b")).getResult();
+        Assert.assertEquals("[c, b]", result.toString());
+
+        Assert.assertEquals(1, resources.get("a").scans);
+        Assert.assertEquals(1, resources.get("b").scans);
+        Assert.assertEquals(1, resources.get("c").scans);
+
+    }
+
+    private static class CountingResource extends TarjanTest.TestResource {
+
+        private List<String> requires;
+        private long lastModified;
+        private int scans;
+
+        CountingResource(String path, long lastModified, String... requires) {
+            super("bundle", path);
+            this.lastModified = lastModified;
+            this.requires = Arrays.asList(requires);
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public List<String> findRequiresTags() {
+            scans++;
+            return requires;
+        }
+
+    }
+
+}
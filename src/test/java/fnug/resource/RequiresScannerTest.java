@@ -0,0 +1,70 @@
+package fnug.resource;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequiresScannerTest {
+
+    private final static Pattern REQUIRES_PAT = Pattern.compile("\\s*[*]\\s*@requires\\s+([^ \\t\\n\\x0B\\f\\r]+)");
+
+    @Test
+    public void testScan() throws Exception {
+
+        String s = "/*global b*/\n/**\n * @requires a.js\n *@requires\tb/c.js \n */\n"
+                + "var x = 1; /* @requires notcomment.js */\n// * @requires \u00e5\u00e4\u00f6.js\n";
+
+        Assert.assertEquals("[a.js, b/c.js, notcomment.js, \u00e5\u00e4\u00f6.js]",
+                RequiresScanner.scan(s.getBytes("utf-8"), false).toString());
+        Assert.assertEquals("[a.js, b/c.js]", RequiresScanner.scan(s.getBytes("utf-8"), true).toString());
+
+        Assert.assertEquals("[]", RequiresScanner.scan(new byte[0], false).toString());
+        Assert.assertEquals("[]", RequiresScanner.scan("* @requires".getBytes("utf-8"), false).toString());
+        Assert.assertEquals("[x]", RequiresScanner.scan("/* * @requires x".getBytes("utf-8"), true).toString());
+
+    }
+
+    @Test
+    public void testHeaderLength() throws Exception {
+
+        Assert.assertEquals(0, RequiresScanner.headerLength("var a;".getBytes("utf-8")));
+        Assert.assertEquals(5, RequiresScanner.headerLength("/**/ var a;".getBytes("utf-8")));
+        Assert.assertEquals(3, RequiresScanner.headerLength("/*/".getBytes("utf-8")));
+        Assert.assertEquals(13, RequiresScanner.headerLength("// a\n/* b */\nvar".getBytes("utf-8")));
+        Assert.assertEquals(4, RequiresScanner.headerLength("\ufeff a".getBytes("utf-8")));
+
+    }
+
+    @Test
+    public void testSameAsPattern() throws Exception {
+
+        String alphabet = "* @requires\t\n\rab\u00e5/";
+        Random rnd = new Random(4711);
+
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder bld = new StringBuilder();
+            int len = rnd.nextInt(60);
+            for (int j = 0; j < len; j++) {
+                if (rnd.nextInt(8) == 0) {
+                    bld.append(" * @requires ");
+                } else {
+                    bld.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+                }
+            }
+            String s = bld.toString();
+            List<String> expected = new LinkedList<String>();
+            Matcher m = REQUIRES_PAT.matcher(s);
+            while (m.find()) {
+                expected.add(m.group(1));
+            }
+            Assert.assertEquals(s, expected, RequiresScanner.scan(s.getBytes("utf-8"), false));
+        }
+
+    }
+
+}
@@ -81,6 +81,40 @@ public class ResourceResolverTest {
 
     }
 
+    @Test
+    public void testResolveNestedBundleNames() {
+
+        ResourceResolver rr = new ResourceResolver();
+        rr.setConfigs(makeConfig("lib"), makeConfig("lib/ext"), makeConfig("libs"), makeConfig("app/ui"));
+
+        Assert.assertEquals("lib", bundleName(rr.resolve("lib/a.js")));
+        // first configured bundle wins, as before
+        Assert.assertEquals("lib", bundleName(rr.resolve("lib/ext/a.js")));
+        Assert.assertEquals("libs", bundleName(rr.resolve("libs/a.js")));
+        Assert.assertEquals("app/ui", bundleName(rr.resolve("app/ui/a.js")));
+        Assert.assertNull(rr.resolve("app/a.js"));
+        Assert.assertNull(rr.resolve("app/uix/a.js"));
+        Assert.assertNull(rr.resolve("a.js"));
+
+    }
+
+    private String bundleName(Resource r) {
+        return ((HasBundle) r).getBundle().getName();
+    }
+
+    @Test
+    public void testShutdown() {
+
+        ResourceResolver rr = new ResourceResolver();
+
+        Assert.assertNotNull(rr.getCompileExecutor());
+        rr.shutdown();
+
+        // no new thread pool once shut down.
+        Assert.assertNull(rr.getCompileExecutor());
+
+    }
+
     @Test
     public void testDuplicateBundles() {
 
@@ -215,6 +249,11 @@ public class ResourceResolverTest {
                         return null;
                     }
 
+                    @Override
+                    public String cssCompressor() {
+                        return null;
+                    }
+
                     @Override
                     public String[] files() {
                         return null;
@@ -112,6 +112,24 @@ public class TarjanTest {
 
     }
 
+    @Test
+    public void testDeepChain() {
+
+        // would overflow the call stack if the walk was recursive.
+        int depth = 50000;
+        for (int i = 0; i < depth; i++) {
+            model.put("d" + i, i == 0 ? new String[] {} : new String[] { "d" + (i - 1) });
+            bundles.put("d" + i, "bundle");
+        }
+
+        List<Resource> result = new Tarjan(makeResource("d" + (depth - 1))).getResult();
+
+        Assert.assertEquals(depth, result.size());
+        Assert.assertEquals("d0", result.get(0).getPath());
+        Assert.assertEquals("d" + (depth - 1), result.get(depth - 1).getPath());
+
+    }
+
     private static Resource makeResource(String path) {
         String bundle = bundles.get(path);
         if (bundle == null) {
@@ -1,5 +1,7 @@
 package fnug.servlet;
 
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -60,4 +62,80 @@ public class BootstrapTest {
 
     }
 
+    @Test
+    public void testEscapeSameAsLegacy() throws Exception {
+
+        Random rnd = new Random(42);
+        char[] chars = "abc{}:,\\\"".toCharArray();
+
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder bld = new StringBuilder();
+            int len = rnd.nextInt(200);
+            for (int j = 0; j < len; j++) {
+                bld.append(chars[rnd.nextInt(chars.length)]);
+            }
+            String s = bld.toString();
+            // long runs of backslashes with short lines never terminate, in
+            // the legacy code as well, so keep the lines reasonably long.
+            int length = 30 + rnd.nextInt(40);
+            Assert.assertEquals(s, legacyEscape(s, length), Bootstrap.escape(s, length));
+        }
+
+    }
+
+    @Test
+    public void testEscapeLarge() throws Exception {
+
+        String s = generateBundleJson(2000);
+        Assert.assertEquals(legacyEscape(s, 1000), Bootstrap.escape(s, 1000));
+
+    }
+
+    /**
+     * Generates something that looks like a json for a large bundle.
+     */
+    static String generateBundleJson(int files) {
+        StringBuilder bld = new StringBuilder("{\"name\":\"big\",\"colls\":[{\"name\":\"big\",\"files\":[");
+        for (int i = 0; i < files; i++) {
+            if (i > 0) {
+                bld.append(',');
+            }
+            bld.append("{\"path\":\"big/some/path/file").append(i).append(".js\"");
+            if (i % 10 == 0) {
+                bld.append(",\"lint\":\"<p>Problem at line ").append(i)
+                        .append(": Expected \\\"===\\\" and saw \\\"==\\\".</p>\"");
+            }
+            bld.append('}');
+        }
+        return bld.append("]}]}").toString();
+    }
+
+    /**
+     * The string concatenating implementation escape() replaced. Kept as reference.
+     */
+    static String legacyEscape(String s, int length) {
+
+        s = s.replace("\\", "\\\\");
+        s = s.replace("\"", "\\\"");
+
+        String result = "";
+        int start = 0;
+        int end = 0;
+
+        while (end + length < s.length()) {
+            start = end;
+            end = start + length;
+            while (s.charAt(end) == '\\' || end > 0 && s.charAt(end - 1) == '\\')
+                end--;
+            result += s.substring(start, end) + "\"+\n\"";
+        }
+
+        result += s.substring(end, s.length());
+
+        result = "\"" + result + "\"";
+
+        return result;
+
+    }
+
 }
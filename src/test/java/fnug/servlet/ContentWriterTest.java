@@ -0,0 +1,87 @@
+package fnug.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fnug.util.IOUtils;
+
+public class ContentWriterTest {
+
+    @Test
+    public void testStream() throws Exception {
+
+        PlainOutputStream os = new PlainOutputStream();
+
+        ContentWriter.write(ByteBuffer.wrap("heap".getBytes()), response(os));
+        ContentWriter.write(IOUtils.direct("direct".getBytes()), response(os));
+
+        Assert.assertEquals("heapdirect", os.baos.toString());
+        Assert.assertNull(ContentWriter.probe(PlainOutputStream.class));
+
+    }
+
+    @Test
+    public void testSendContent() throws Exception {
+
+        SendContentOutputStream os = new SendContentOutputStream();
+
+        ByteBuffer direct = IOUtils.direct("direct".getBytes());
+        ContentWriter.write(direct, response(os));
+        Assert.assertEquals(0, direct.position());
+        Assert.assertEquals(1, os.sent);
+
+        // heap buffers are just written.
+        ContentWriter.write(ByteBuffer.wrap("heap".getBytes()), response(os));
+        Assert.assertEquals(1, os.sent);
+
+        Assert.assertEquals("directheap", os.baos.toString());
+
+    }
+
+    private HttpServletResponse response(final ServletOutputStream os) {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getOutputStream")) {
+                            return os;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    public static class PlainOutputStream extends ServletOutputStream {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            baos.write(b);
+        }
+
+    }
+
+    public static class SendContentOutputStream extends PlainOutputStream {
+
+        int sent;
+
+        public void sendContent(ByteBuffer buf) throws IOException {
+            sent++;
+            baos.write(IOUtils.toBytes(buf));
+            buf.position(buf.limit());
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package fnug.servlet;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import fnug.config.BundleConfig;
+import fnug.resource.Bundle;
+import fnug.resource.Resource;
+import fnug.resource.ResourceCollection;
+import fnug.util.JSLintWrapper;
+
+public class ToServeCacheTest {
+
+    @Test
+    public void testBundle() throws Exception {
+
+        ToServeCache cache = new ToServeCache(new ObjectMapper());
+        TestBundle bundle = new TestBundle("test", 1000l);
+
+        ToServe t1 = cache.getBundle(bundle, null);
+        Assert.assertEquals("{\"name\":\"test\",\"colls\":[]}", new String(t1.getBytes(), "utf-8"));
+        Assert.assertNotNull(t1.getETag());
+
+        ToServe t2 = cache.getBundle(bundle, null);
+        Assert.assertSame(t1, t2);
+        Assert.assertSame(t1.getBytes(), t2.getBytes());
+        Assert.assertSame(t1.getGzipBytes(), t2.getGzipBytes());
+
+        bundle.lastModified = 2000l;
+
+        ToServe t3 = cache.getBundle(bundle, null);
+        Assert.assertNotSame(t1, t3);
+        Assert.assertEquals(2000l, t3.getLastModified());
+        Assert.assertSame(t3, cache.getBundle(bundle, null));
+
+        // same name, other instance, as when the resolver reloads config.
+        ToServe t4 = cache.getBundle(new TestBundle("test", 2000l), null);
+        Assert.assertNotSame(t3, t4);
+
+    }
+
+    @Test
+    public void testJsonP() throws Exception {
+
+        ToServeCache cache = new ToServeCache(new ObjectMapper());
+        TestBundle bundle = new TestBundle("test", 1000l);
+
+        ToServe t1 = cache.getBundle(bundle, "cb");
+        Assert.assertEquals("cb({\"name\":\"test\",\"colls\":[]});", new String(t1.getBytes(), "utf-8"));
+        Assert.assertNull(t1.getETag());
+
+        Assert.assertNotSame(t1, cache.getBundle(bundle, "cb"));
+
+        // does not replace the plain json.
+        ToServe t2 = cache.getBundle(bundle, null);
+        cache.getBundle(bundle, "cb");
+        Assert.assertSame(t2, cache.getBundle(bundle, null));
+
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+
+        ToServeCache cache = new ToServeCache(new ObjectMapper());
+        TestBundle bundle = new TestBundle("test", 1000l);
+        TestBundle other = new TestBundle("test2", 1000l);
+
+        ToServe t1 = cache.getBundle(bundle, null);
+        ToServe t2 = cache.getBundle(other, null);
+
+        cache.drop(bundle);
+
+        Assert.assertNotSame(t1, cache.getBundle(bundle, null));
+        Assert.assertSame(t2, cache.getBundle(other, null));
+
+    }
+
+    private static class TestBundle implements Bundle {
+
+        String name;
+        long lastModified;
+
+        TestBundle(String name, long lastModified) {
+            this.name = name;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public BundleConfig getConfig() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Resource resolve(String path) {
+            return null;
+        }
+
+        @Override
+        public ResourceCollection[] getResourceCollections() {
+            return new ResourceCollection[] {};
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public boolean checkModified() {
+            return false;
+        }
+
+        @Override
+        public JSLintWrapper getJsLinter() {
+            return null;
+        }
+
+    }
+
+}
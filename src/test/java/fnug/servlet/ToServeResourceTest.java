@@ -0,0 +1,72 @@
+package fnug.servlet;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fnug.resource.AbstractResource;
+
+public class ToServeResourceTest {
+
+    @Test
+    public void testJsonP() throws Exception {
+
+        String data = "var a = 'x';\r\nvar b = \"\u00e5\u00e4\u00f6\";\n";
+
+        ToServeResource t = new ToServeResource(new TestResource("test.js", data), "cb");
+
+        Assert.assertEquals("cb('" + legacyEscape(data) + "');", new String(t.getBytes(), "utf-8"));
+        Assert.assertEquals("cb('var a = \\'x\\';\\r\\nvar b = \"\u00e5\u00e4\u00f6\";\\n');",
+                new String(t.getBytes(), "utf-8"));
+        Assert.assertSame(t.getBytes(), t.getBytes());
+        Assert.assertNull(t.getETag());
+
+        // not text, no jsonp.
+        t = new ToServeResource(new TestResource("test.png", data), "cb");
+        Assert.assertEquals(data, new String(t.getBytes(), "utf-8"));
+        Assert.assertNotNull(t.getETag());
+
+    }
+
+    /**
+     * How the bytes used to be escaped.
+     */
+    private static String legacyEscape(String s) {
+        s = s.replace("'", "\\'");
+        s = s.replaceAll("\r", "\\\\r");
+        s = s.replaceAll("\n", "\\\\n");
+        return s;
+    }
+
+    private static class TestResource extends AbstractResource {
+
+        private String data;
+
+        TestResource(String path, String data) {
+            super("/", path);
+            this.data = data;
+        }
+
+        @Override
+        protected Entry readEntry() {
+            try {
+                return new Entry(1000l, data.getBytes("utf-8"));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected long readLastModified() {
+            return 1000l;
+        }
+
+        @Override
+        public List<String> findRequiresTags() {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+package fnug.util;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CssMinifierTest {
+
+    private static final String[] SAMPLES = new String[] {
+            "body { background: black; \n\n\n\n     color: white; margin:   14px 14px    14px 14px; }",
+            "body { background: ",
+            "body { background: }",
+            "a :hover { color: red } p:first-line , p:first-letter { color: blue }",
+            "a{b:c}d :link{e:f} g{h:i}",
+            "@media screen and (-webkit-min-device-pixel-ratio:0) { a { color: red } }",
+            "a { margin: 0px 0em 0% 0in; padding: 0 0 0 0; border: 0 0 0; top: 0 0 }",
+            "a { background-position: 0 0; -webkit-transform-origin: 0 0 0; Transform-Origin: 0 }",
+            "a { opacity: 0.6; line-height: 00.5em; margin: 1 0.5 }",
+            "a { color: rgb(51, 102, 153); background: RGB(1,2,3) rgb (10,200,255) }",
+            "#AABBCC { color: #AABBCC; background: #AbCdEf } a{filter: chroma(color=#FFFFFF)} b{c:\"#FFFFFF\"}",
+            "a { border: none; Border-Top: NONE; outline:none } b{ background:none }",
+            "a { filter: progid:DXImageTransform.Microsoft.Alpha(Opacity=80); "
+                    + "-ms-filter: \"progid:DXImageTransform.Microsoft.Alpha(Opacity=80)\" }",
+            "a { } b{} c { color: red } d{;} e{color:red;;;}",
+            "/*! keep me */ a { color: red } /* remove me */ b { color: blue }",
+            "/* hack \\*/ a { color: red } /* second */ b { color: blue }",
+            "html >/**/ body { color: red } html > /**/ p { color: blue }",
+            "a { content: \"/* not a comment */\"; quotes: '\"' '\\'' }",
+            "a { content: \"it\\\"s\" } b { content: 'x\\\\' }",
+            "a { background: url(  'img.png'  ) no-repeat  }",
+            "@charset \"utf-8\"; a { color: red } @charset \"iso-8859-1\";",
+            "  @charset \"a\";  @charset \"b\"; a{b:c}",
+            "a { color: red !important ; margin : 1px ; } ",
+            "a[href=\"x\"] > b + c , d ~ e { color : red }",
+            "a{b:c}/* unterminated",
+            "a { content: \"unterminated } b { c: d }",
+            "\n\t a { \t color:\r\n red }\n\n",
+            "a { content: \"\\/* x\" */ } b { c: d }",
+            "a { content: \"/* \\*/\" } /* next */ b { c: d }",
+            "a { color: \\#000000 }",
+            "a\u2028@charset \"x\";" };
+
+    @Test
+    public void testSamples() throws Exception {
+        for (String css : SAMPLES) {
+            Assert.assertEquals(css, yui(css), CssMinifier.minify(css));
+        }
+    }
+
+    @Test
+    public void testCompressCss() throws Exception {
+
+        Assert.assertEquals("body{background:black;color:white;margin:14px 14px 14px 14px}",
+                CssMinifier.minify(SAMPLES[0]));
+        Assert.assertEquals("body{background:", CssMinifier.minify(SAMPLES[1]));
+        Assert.assertEquals("body{background:}", CssMinifier.minify(SAMPLES[2]));
+
+    }
+
+    @Test
+    public void testRandomStylesheets() throws Exception {
+
+        Random rnd = new Random(4711);
+
+        for (int i = 0; i < 2000; i++) {
+            String css = stylesheet(rnd);
+            Assert.assertEquals(css, yui(css), CssMinifier.minify(css));
+        }
+
+    }
+
+    private static final String[] SELECTORS = new String[] { "a", "div.foo", "#main", "#AABBCC", "ul li",
+            "a:hover", "a :hover", "p:first-line", "p:first-letter", "html > body", "html >/**/ body", "h1 + h2",
+            "input[type=\"text\"]", "a::before", "div *", "tr:nth-child(2n+1)" };
+
+    private static final String[] PROPERTIES = new String[] { "color", "background", "margin", "padding",
+            "border", "border-top", "Border-Right", "border-bottom", "outline", "background-position",
+            "transform-origin", "-webkit-transform-origin", "-moz-transform-origin", "filter", "opacity",
+            "font-family", "content", "width", "line-height", "BACKGROUND-POSITION" };
+
+    private static final String[] VALUES = new String[] { "red", "#AABBCC", "#aabbcc", "#A1B2C3", "#FFF",
+            "rgb(51,102,153)", "rgb( 1 , 2 , 3 )", "0", "0px", "0em", "0%", "0 0", "0 0 0", "0 0 0 0", "0.5em",
+            "00.25", "1.0", "10px", "none", "NONE", "\"Helvetica Neue\"", "'it\\'s'", "url(img.png)",
+            "url( 'a b.png' )", "progid:DXImageTransform.Microsoft.Alpha(Opacity=50)",
+            "\"progid:DXImageTransform.Microsoft.Alpha(Opacity=50)\"", "chroma(color=#FFFFFF)",
+            "\"/* in string */\"", "1px solid #000000", "auto !important", "inherit" };
+
+    private static final String[] COMMENTS = new String[] { "/* comment */", "/*! preserved */", "/**/",
+            "/* hack \\*/", "/* multi\nline */" };
+
+    private static final String[] SPACES = new String[] { "", " ", "  ", "\n", "\t", "\r\n  " };
+
+    private String stylesheet(Random rnd) {
+        StringBuilder b = new StringBuilder();
+        if (rnd.nextInt(10) == 0) {
+            b.append("@charset \"utf-8\";").append(space(rnd));
+        }
+        int rules = 1 + rnd.nextInt(6);
+        for (int i = 0; i < rules; i++) {
+            if (rnd.nextInt(8) == 0) {
+                b.append("@media screen").append(rnd.nextBoolean() ? " and (max-width:100px)" : "").append(
+                        space(rnd)).append("{").append(space(rnd));
+                rule(rnd, b);
+                b.append("}").append(space(rnd));
+            } else {
+                rule(rnd, b);
+            }
+            if (rnd.nextInt(4) == 0) {
+                b.append(pick(rnd, COMMENTS)).append(space(rnd));
+            }
+        }
+        return b.toString();
+    }
+
+    private void rule(Random rnd, StringBuilder b) {
+        int selectors = 1 + rnd.nextInt(3);
+        for (int i = 0; i < selectors; i++) {
+            if (i > 0) {
+                b.append(space(rnd)).append(",").append(space(rnd));
+            }
+            b.append(pick(rnd, SELECTORS));
+        }
+        b.append(space(rnd)).append("{").append(space(rnd));
+        int declarations = rnd.nextInt(5);
+        for (int i = 0; i < declarations; i++) {
+            b.append(pick(rnd, PROPERTIES)).append(space(rnd)).append(":").append(space(rnd));
+            b.append(pick(rnd, VALUES));
+            if (rnd.nextInt(6) == 0) {
+                b.append(" ").append(pick(rnd, VALUES));
+            }
+            if (i < declarations - 1 || rnd.nextBoolean()) {
+                b.append(space(rnd)).append(";");
+                if (rnd.nextInt(10) == 0) {
+                    b.append(";");
+                }
+            }
+            b.append(space(rnd));
+            if (rnd.nextInt(10) == 0) {
+                b.append(pick(rnd, COMMENTS));
+            }
+        }
+        b.append("}").append(space(rnd));
+    }
+
+    private String space(Random rnd) {
+        return pick(rnd, SPACES);
+    }
+
+    private String pick(Random rnd, String[] values) {
+        return values[rnd.nextInt(values.length)];
+    }
+
+    private String yui(String css) throws Exception {
+        StringWriter writer = new StringWriter();
+        new YUICssCompressor(new StringReader(css)).compress(writer, 0);
+        return writer.toString();
+    }
+
+}
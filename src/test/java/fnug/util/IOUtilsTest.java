@@ -0,0 +1,54 @@
+package fnug.util;
+
+import java.net.URI;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IOUtilsTest {
+
+    @Test
+    public void testNormalize() {
+
+        Assert.assertEquals("/a/b.js", IOUtils.normalize("a/b.js"));
+        Assert.assertEquals("/a/b.js", IOUtils.normalize("a/./b.js"));
+        Assert.assertEquals("/b.js", IOUtils.normalize("a/../b.js"));
+        Assert.assertEquals("/a/b.js", IOUtils.normalize("a//b.js"));
+        Assert.assertEquals("/a/", IOUtils.normalize("a/b/.."));
+        Assert.assertEquals("/a/", IOUtils.normalize("a/."));
+        Assert.assertEquals("/", IOUtils.normalize("foo/.."));
+        Assert.assertEquals("/", IOUtils.normalize(""));
+        Assert.assertEquals("/../foo", IOUtils.normalize("../foo"));
+        Assert.assertEquals("/../../b", IOUtils.normalize("a/../../../b"));
+        Assert.assertEquals("/.../a", IOUtils.normalize(".../a"));
+
+    }
+
+    @Test
+    public void testNormalizeSameAsURI() throws Exception {
+
+        String[] parts = new String[] { "a", "b", ".", "..", "...", "/", "/", "/", ".a", "%", " ", ":", "\u00e5" };
+        Random rnd = new Random(4711);
+
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder bld = new StringBuilder();
+            int len = rnd.nextInt(12);
+            for (int j = 0; j < len; j++) {
+                bld.append(parts[rnd.nextInt(parts.length)]);
+            }
+            String path = bld.toString();
+            Assert.assertEquals(path, uriNormalize(path), IOUtils.normalize(path));
+        }
+
+    }
+
+    /**
+     * How the paths used to be normalized.
+     */
+    private static String uriNormalize(String path) throws Exception {
+        URI uri = new URI("http", "fake", "/" + path, "", "");
+        return uri.normalize().getPath();
+    }
+
+}
@@ -0,0 +1,5 @@
+{
+	testbundle1: {
+	    cssCompressor: 'fast'
+	}
+}